@@ -0,0 +1,378 @@
+package metafunction;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of calling a handler through a generated MetaFunction, at every arity, compared with calling
+ * the lambda directly and with a constant MethodHandle. The metaHandle benchmarks use the METHOD_HANDLE engine. Run with {@code gradle jmh}, which attaches the
+ * GC profiler so the allocation rate of each path is reported next to its latency.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ArityBenchmark {
+
+    static class Capture extends Capture_MetaFunction<Object> {
+        @MetaMethod MetaFunction<Object> capture(MetaFunction<Object> function) {
+            return function;
+        }
+    }
+
+    static class HandleCapture extends HandleCapture_MetaFunction<Object> {
+        @MetaMethod(engine = MetaMethod.Engine.METHOD_HANDLE) MetaFunction<Object> capture(MetaFunction<Object> function) {
+            return function;
+        }
+    }
+
+    static final Capture CAPTURE = new Capture();
+    static final HandleCapture HANDLE_CAPTURE = new HandleCapture();
+
+    static final Functions.F0<Object> F0 = () -> "0";
+    static final Functions.F1<Object,Object> F1 = (a) -> a;
+    static final Functions.F2<Object,Object,Object> F2 = (a, b) -> b;
+    static final Functions.F3<Object,Object,Object,Object> F3 = (a, b, c) -> c;
+    static final Functions.F4<Object,Object,Object,Object,Object> F4 = (a, b, c, d) -> d;
+    static final Functions.F5<Object,Object,Object,Object,Object,Object> F5 = (a, b, c, d, e) -> e;
+    static final Functions.F6<Object,Object,Object,Object,Object,Object,Object> F6 = (a, b, c, d, e, f) -> f;
+    static final Functions.F7<Object,Object,Object,Object,Object,Object,Object,Object> F7 = (a, b, c, d, e, f, g) -> g;
+    static final Functions.F8<Object,Object,Object,Object,Object,Object,Object,Object,Object> F8 = (a, b, c, d, e, f, g, h) -> h;
+    static final Functions.F9<Object,Object,Object,Object,Object,Object,Object,Object,Object,Object> F9 = (a, b, c, d, e, f, g, h, i) -> i;
+    static final Functions.F10<Object,Object,Object,Object,Object,Object,Object,Object,Object,Object,Object> F10 = (a, b, c, d, e, f, g, h, i, j) -> j;
+
+    static final MetaFunction<Object> META0 = CAPTURE.capture(F0);
+    static final MetaFunction<Object> META1 = CAPTURE.capture(F1);
+    static final MetaFunction<Object> META2 = CAPTURE.capture(F2);
+    static final MetaFunction<Object> META3 = CAPTURE.capture(F3);
+    static final MetaFunction<Object> META4 = CAPTURE.capture(F4);
+    static final MetaFunction<Object> META5 = CAPTURE.capture(F5);
+    static final MetaFunction<Object> META6 = CAPTURE.capture(F6);
+    static final MetaFunction<Object> META7 = CAPTURE.capture(F7);
+    static final MetaFunction<Object> META8 = CAPTURE.capture(F8);
+    static final MetaFunction<Object> META9 = CAPTURE.capture(F9);
+    static final MetaFunction<Object> META10 = CAPTURE.capture(F10);
+
+    static final MetaFunction<Object> META_HANDLE0 = HANDLE_CAPTURE.capture(F0);
+    static final MetaFunction<Object> META_HANDLE1 = HANDLE_CAPTURE.capture(F1);
+    static final MetaFunction<Object> META_HANDLE2 = HANDLE_CAPTURE.capture(F2);
+    static final MetaFunction<Object> META_HANDLE3 = HANDLE_CAPTURE.capture(F3);
+    static final MetaFunction<Object> META_HANDLE4 = HANDLE_CAPTURE.capture(F4);
+    static final MetaFunction<Object> META_HANDLE5 = HANDLE_CAPTURE.capture(F5);
+    static final MetaFunction<Object> META_HANDLE6 = HANDLE_CAPTURE.capture(F6);
+    static final MetaFunction<Object> META_HANDLE7 = HANDLE_CAPTURE.capture(F7);
+    static final MetaFunction<Object> META_HANDLE8 = HANDLE_CAPTURE.capture(F8);
+    static final MetaFunction<Object> META_HANDLE9 = HANDLE_CAPTURE.capture(F9);
+    static final MetaFunction<Object> META_HANDLE10 = HANDLE_CAPTURE.capture(F10);
+
+    static final MethodHandle HANDLE0 = handle(Functions.F0.class, F0, 0);
+    static final MethodHandle HANDLE1 = handle(Functions.F1.class, F1, 1);
+    static final MethodHandle HANDLE2 = handle(Functions.F2.class, F2, 2);
+    static final MethodHandle HANDLE3 = handle(Functions.F3.class, F3, 3);
+    static final MethodHandle HANDLE4 = handle(Functions.F4.class, F4, 4);
+    static final MethodHandle HANDLE5 = handle(Functions.F5.class, F5, 5);
+    static final MethodHandle HANDLE6 = handle(Functions.F6.class, F6, 6);
+    static final MethodHandle HANDLE7 = handle(Functions.F7.class, F7, 7);
+    static final MethodHandle HANDLE8 = handle(Functions.F8.class, F8, 8);
+    static final MethodHandle HANDLE9 = handle(Functions.F9.class, F9, 9);
+    static final MethodHandle HANDLE10 = handle(Functions.F10.class, F10, 10);
+
+    static MethodHandle handle(Class<?> functionType, Functions.F<Object> function, int arity) {
+        try {
+            return MethodHandles.publicLookup()
+                    .findVirtual(functionType, "apply", MethodType.genericMethodType(arity))
+                    .bindTo(function);
+        } catch (ReflectiveOperationException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    Object a = "a";
+    Object b = "b";
+    Object c = "c";
+    Object d = "d";
+    Object e = "e";
+    Object f = "f";
+    Object g = "g";
+    Object h = "h";
+    Object i = "i";
+    Object j = "j";
+
+    @Benchmark public Object direct0() {
+        return F0.apply();
+    }
+
+    @Benchmark public Object metaApply0() {
+        return META0.apply();
+    }
+
+    @Benchmark public Object metaApplyFixed0() {
+        return META0.apply0();
+    }
+
+    @Benchmark public Object methodHandle0() throws Throwable {
+        return (Object) HANDLE0.invokeExact();
+    }
+
+    @Benchmark public Object metaHandleApply0() {
+        return META_HANDLE0.apply();
+    }
+
+    @Benchmark public Object metaHandleApplyFixed0() {
+        return META_HANDLE0.apply0();
+    }
+
+    @Benchmark public Object direct1() {
+        return F1.apply(a);
+    }
+
+    @Benchmark public Object metaApply1() {
+        return META1.apply(a);
+    }
+
+    @Benchmark public Object metaApplyFixed1() {
+        return META1.apply1(a);
+    }
+
+    @Benchmark public Object methodHandle1() throws Throwable {
+        return (Object) HANDLE1.invokeExact(a);
+    }
+
+    @Benchmark public Object metaHandleApply1() {
+        return META_HANDLE1.apply(a);
+    }
+
+    @Benchmark public Object metaHandleApplyFixed1() {
+        return META_HANDLE1.apply1(a);
+    }
+
+    @Benchmark public Object direct2() {
+        return F2.apply(a, b);
+    }
+
+    @Benchmark public Object metaApply2() {
+        return META2.apply(a, b);
+    }
+
+    @Benchmark public Object metaApplyFixed2() {
+        return META2.apply2(a, b);
+    }
+
+    @Benchmark public Object methodHandle2() throws Throwable {
+        return (Object) HANDLE2.invokeExact(a, b);
+    }
+
+    @Benchmark public Object metaHandleApply2() {
+        return META_HANDLE2.apply(a, b);
+    }
+
+    @Benchmark public Object metaHandleApplyFixed2() {
+        return META_HANDLE2.apply2(a, b);
+    }
+
+    @Benchmark public Object direct3() {
+        return F3.apply(a, b, c);
+    }
+
+    @Benchmark public Object metaApply3() {
+        return META3.apply(a, b, c);
+    }
+
+    @Benchmark public Object metaApplyFixed3() {
+        return META3.apply3(a, b, c);
+    }
+
+    @Benchmark public Object methodHandle3() throws Throwable {
+        return (Object) HANDLE3.invokeExact(a, b, c);
+    }
+
+    @Benchmark public Object metaHandleApply3() {
+        return META_HANDLE3.apply(a, b, c);
+    }
+
+    @Benchmark public Object metaHandleApplyFixed3() {
+        return META_HANDLE3.apply3(a, b, c);
+    }
+
+    @Benchmark public Object direct4() {
+        return F4.apply(a, b, c, d);
+    }
+
+    @Benchmark public Object metaApply4() {
+        return META4.apply(a, b, c, d);
+    }
+
+    @Benchmark public Object metaApplyFixed4() {
+        return META4.apply4(a, b, c, d);
+    }
+
+    @Benchmark public Object methodHandle4() throws Throwable {
+        return (Object) HANDLE4.invokeExact(a, b, c, d);
+    }
+
+    @Benchmark public Object metaHandleApply4() {
+        return META_HANDLE4.apply(a, b, c, d);
+    }
+
+    @Benchmark public Object metaHandleApplyFixed4() {
+        return META_HANDLE4.apply4(a, b, c, d);
+    }
+
+    @Benchmark public Object direct5() {
+        return F5.apply(a, b, c, d, e);
+    }
+
+    @Benchmark public Object metaApply5() {
+        return META5.apply(a, b, c, d, e);
+    }
+
+    @Benchmark public Object metaApplyFixed5() {
+        return META5.apply5(a, b, c, d, e);
+    }
+
+    @Benchmark public Object methodHandle5() throws Throwable {
+        return (Object) HANDLE5.invokeExact(a, b, c, d, e);
+    }
+
+    @Benchmark public Object metaHandleApply5() {
+        return META_HANDLE5.apply(a, b, c, d, e);
+    }
+
+    @Benchmark public Object metaHandleApplyFixed5() {
+        return META_HANDLE5.apply5(a, b, c, d, e);
+    }
+
+    @Benchmark public Object direct6() {
+        return F6.apply(a, b, c, d, e, f);
+    }
+
+    @Benchmark public Object metaApply6() {
+        return META6.apply(a, b, c, d, e, f);
+    }
+
+    @Benchmark public Object metaApplyFixed6() {
+        return META6.apply6(a, b, c, d, e, f);
+    }
+
+    @Benchmark public Object methodHandle6() throws Throwable {
+        return (Object) HANDLE6.invokeExact(a, b, c, d, e, f);
+    }
+
+    @Benchmark public Object metaHandleApply6() {
+        return META_HANDLE6.apply(a, b, c, d, e, f);
+    }
+
+    @Benchmark public Object metaHandleApplyFixed6() {
+        return META_HANDLE6.apply6(a, b, c, d, e, f);
+    }
+
+    @Benchmark public Object direct7() {
+        return F7.apply(a, b, c, d, e, f, g);
+    }
+
+    @Benchmark public Object metaApply7() {
+        return META7.apply(a, b, c, d, e, f, g);
+    }
+
+    @Benchmark public Object metaApplyFixed7() {
+        return META7.apply7(a, b, c, d, e, f, g);
+    }
+
+    @Benchmark public Object methodHandle7() throws Throwable {
+        return (Object) HANDLE7.invokeExact(a, b, c, d, e, f, g);
+    }
+
+    @Benchmark public Object metaHandleApply7() {
+        return META_HANDLE7.apply(a, b, c, d, e, f, g);
+    }
+
+    @Benchmark public Object metaHandleApplyFixed7() {
+        return META_HANDLE7.apply7(a, b, c, d, e, f, g);
+    }
+
+    @Benchmark public Object direct8() {
+        return F8.apply(a, b, c, d, e, f, g, h);
+    }
+
+    @Benchmark public Object metaApply8() {
+        return META8.apply(a, b, c, d, e, f, g, h);
+    }
+
+    @Benchmark public Object metaApplyFixed8() {
+        return META8.apply8(a, b, c, d, e, f, g, h);
+    }
+
+    @Benchmark public Object methodHandle8() throws Throwable {
+        return (Object) HANDLE8.invokeExact(a, b, c, d, e, f, g, h);
+    }
+
+    @Benchmark public Object metaHandleApply8() {
+        return META_HANDLE8.apply(a, b, c, d, e, f, g, h);
+    }
+
+    @Benchmark public Object metaHandleApplyFixed8() {
+        return META_HANDLE8.apply8(a, b, c, d, e, f, g, h);
+    }
+
+    @Benchmark public Object direct9() {
+        return F9.apply(a, b, c, d, e, f, g, h, i);
+    }
+
+    @Benchmark public Object metaApply9() {
+        return META9.apply(a, b, c, d, e, f, g, h, i);
+    }
+
+    @Benchmark public Object metaApplyFixed9() {
+        return META9.apply9(a, b, c, d, e, f, g, h, i);
+    }
+
+    @Benchmark public Object methodHandle9() throws Throwable {
+        return (Object) HANDLE9.invokeExact(a, b, c, d, e, f, g, h, i);
+    }
+
+    @Benchmark public Object metaHandleApply9() {
+        return META_HANDLE9.apply(a, b, c, d, e, f, g, h, i);
+    }
+
+    @Benchmark public Object metaHandleApplyFixed9() {
+        return META_HANDLE9.apply9(a, b, c, d, e, f, g, h, i);
+    }
+
+    @Benchmark public Object direct10() {
+        return F10.apply(a, b, c, d, e, f, g, h, i, j);
+    }
+
+    @Benchmark public Object metaApply10() {
+        return META10.apply(a, b, c, d, e, f, g, h, i, j);
+    }
+
+    @Benchmark public Object metaApplyFixed10() {
+        return META10.apply10(a, b, c, d, e, f, g, h, i, j);
+    }
+
+    @Benchmark public Object methodHandle10() throws Throwable {
+        return (Object) HANDLE10.invokeExact(a, b, c, d, e, f, g, h, i, j);
+    }
+
+    @Benchmark public Object metaHandleApply10() {
+        return META_HANDLE10.apply(a, b, c, d, e, f, g, h, i, j);
+    }
+
+    @Benchmark public Object metaHandleApplyFixed10() {
+        return META_HANDLE10.apply10(a, b, c, d, e, f, g, h, i, j);
+    }
+}
@@ -0,0 +1,63 @@
+package metafunction;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Calling one MetaFunction over many argument tuples: a loop of apply calls against the batch APIs.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BatchBenchmark {
+
+    @Param({"1000", "100000"})
+    int size;
+
+    MetaFunction<Object> function;
+    Object[][] columns;
+    Object[] results;
+
+    @Setup public void setUp() {
+        function = ArityBenchmark.CAPTURE.capture((Integer a, Integer b) -> a + b);
+        columns = new Object[2][size];
+        for (int i = 0; i < size; i++) {
+            columns[0][i] = i;
+            columns[1][i] = size - i;
+        }
+        results = new Object[size];
+    }
+
+    @Benchmark public Object[] applyLoop() {
+        Object[] first = columns[0];
+        Object[] second = columns[1];
+        for (int i = 0; i < size; i++) {
+            results[i] = function.apply(first[i], second[i]);
+        }
+        return results;
+    }
+
+    @Benchmark public Object[] applyBatch() {
+        function.applyBatch(columns, results);
+        return results;
+    }
+
+    @Benchmark public Object[] applyBatchParallel() {
+        function.applyBatchParallel(columns, results);
+        return results;
+    }
+}
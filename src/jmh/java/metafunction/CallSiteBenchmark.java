@@ -0,0 +1,65 @@
+package metafunction;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.invoke.MethodHandle;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One call site shared by a few handlers of different arities: a plain {@code apply}, which the JIT sees as
+ * megamorphic, against a MetaCallSite that has specialized for them.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CallSiteBenchmark {
+    static final MetaCallSite<Object> SITE = new MetaCallSite<>();
+    static final MethodHandle INVOKER = SITE.invoker();
+
+    static final int CALLS = 1 << 10;
+
+    MetaFunction<?>[] functions;
+    Object[][] args;
+    int next;
+
+    @Setup public void setUp() {
+        MetaFunction<?>[] handlers = {
+                new MetaFunction.Arity1<String, Object>(a -> a),
+                new MetaFunction.Arity2<String, String, Object>((a, b) -> b),
+                new MetaFunction.Arity3<String, String, String, Object>((a, b, c) -> c)};
+        Random random = new Random(42);
+        functions = new MetaFunction<?>[CALLS];
+        args = new Object[CALLS][];
+        for (int i = 0; i < CALLS; i++) {
+            int handler = random.nextInt(handlers.length);
+            functions[i] = handlers[handler];
+            args[i] = new Object[handler + 1];
+            for (int a = 0; a < args[i].length; a++) {
+                args[i][a] = "arg" + a;
+            }
+        }
+    }
+
+    @Benchmark public Object shared() {
+        int call = next++ & (CALLS - 1);
+        return functions[call].apply(args[call]);
+    }
+
+    @Benchmark public Object callSite() throws Throwable {
+        int call = next++ & (CALLS - 1);
+        return (Object) INVOKER.invokeExact((MetaFunction) functions[call], args[call]);
+    }
+}
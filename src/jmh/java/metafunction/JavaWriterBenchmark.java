@@ -0,0 +1,79 @@
+package metafunction;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.lang.reflect.Modifier;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Emission throughput for a large generated class: {@code methods} meta methods with an overload per arity, written
+ * the way MetaMethodProcessor writes them, into a reused StringBuilder and through a Writer.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JavaWriterBenchmark {
+    @Param({"100", "1000"})
+    int methods;
+
+    final StringBuilder buffer = new StringBuilder();
+    String[][] overloadParams;
+
+    @Setup public void setUp() {
+        overloadParams = new String[MetaMethodProcessor.MAX_LIBRARY_ARITY + 1][];
+        StringBuilder generics = new StringBuilder();
+        for (int i = 0; i <= MetaMethodProcessor.MAX_LIBRARY_ARITY; i++) {
+            overloadParams[i] = new String[]{"java.lang.String", "path", "metafunction.Functions.F" + i + "<" + generics + "R>", "handler"};
+            generics.append("T").append(i).append(",");
+        }
+    }
+
+    @Benchmark public int buffer() throws IOException {
+        buffer.setLength(0);
+        emit(new JavaWriter(buffer));
+        return buffer.length();
+    }
+
+    @Benchmark public int writer() throws IOException {
+        StringWriter out = new StringWriter();
+        try (JavaWriter writer = new JavaWriter(out)) {
+            emit(writer);
+        }
+        return out.getBuffer().length();
+    }
+
+    private void emit(JavaWriter writer) throws IOException {
+        writer.addPackage("synthetic");
+        writer.addImport(MetaFunction.class);
+        writer.addImport(Functions.class);
+        writer.annotation("SuppressWarnings(\"unchecked\")");
+        writer.beginType("synthetic.Synthetic_MetaFunction<R>", "abstract class", 0);
+        for (int m = 0; m < methods; m++) {
+            String name = "route" + m;
+            writer.beginMethod("synthetic.Synthetic", name, Modifier.ABSTRACT,
+                    "java.lang.String", "path", "metafunction.MetaFunction<R>", "handler");
+            writer.endMethod();
+            for (int i = 0; i < overloadParams.length; i++) {
+                writer.beginMethod("synthetic.Synthetic", name, Modifier.PUBLIC, overloadParams[i]);
+                writer.statement("return %s(path, new MetaFunction.Arity%d(handler))", name, i);
+                writer.endMethod();
+            }
+        }
+        writer.endType();
+    }
+}
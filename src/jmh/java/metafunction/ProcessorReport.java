@@ -0,0 +1,143 @@
+package metafunction;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.io.Files;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Drives MetaMethodProcessor through an in-process javac over synthetic classes with many meta methods, and
+ * reports the wall time of the whole compilation, the bytes all threads allocated during it (including rendering
+ * on the fork-join pool), and the processor's own time split into collecting elements, rendering sources and
+ * writing them to the Filer. Each figure is the median of
+ * {@link #RUNS} runs after {@link #WARMUP} warmup runs.
+ *
+ *     gradle processorReport [-Psizes=100,1000,5000] [-Ptolerance=0.2] [-PfailOnRegression] [-Pprofile]
+ *
+ * Arguments: the CSV file to write, a comma-separated list of sizes, a baseline CSV, a tolerance and whether to
+ * fail on a regression. The first run writes the baseline. Later runs compare against it and report any size
+ * whose processor time grew by more than the tolerance, so a processor change can be checked before it lands.
+ * Timings vary from run to run, so a regression only fails the run when asked to. Delete the baseline to take a
+ * new one.
+ */
+public class ProcessorReport {
+    static final int WARMUP = 3;
+    static final int RUNS = 5;
+    static final String HEADER = "methods,wallMillis,allocatedBytes,collectMillis,renderMillis,writeMillis";
+
+    public static void main(String[] args) throws Exception {
+        File output = new File(args[0]);
+        String[] sizes = args.length > 1 ? args[1].split(",") : new String[]{"100", "1000", "5000"};
+        File baseline = args.length > 2 ? new File(args[2]) : null;
+        double tolerance = args.length > 3 ? Double.parseDouble(args[3]) : 0.2;
+        boolean failOnRegression = args.length > 4 && Boolean.parseBoolean(args[4]);
+
+        StringBuilder csv = new StringBuilder(HEADER).append('\n');
+        Map<Integer, double[]> results = Maps.newLinkedHashMap();
+        File work = SyntheticSources.tempDirectory();
+        try {
+            for (String size : sizes) {
+                int methods = Integer.parseInt(size.trim());
+                File directory = new File(work, String.valueOf(methods));
+                for (int i = 0; i < WARMUP; i++) {
+                    SyntheticSources.compile(methods, directory);
+                }
+                List<double[]> runs = Lists.newArrayList();
+                for (int i = 0; i < RUNS; i++) {
+                    runs.add(run(methods, directory));
+                }
+                double[] median = median(runs);
+                results.put(methods, median);
+                String row = String.format("%d,%.1f,%.0f,%.1f,%.1f,%.1f", methods, median[0], median[1], median[2], median[3], median[4]);
+                System.out.println(row);
+                csv.append(row).append('\n');
+            }
+        } finally {
+            SyntheticSources.delete(work);
+        }
+        Files.asCharSink(output, StandardCharsets.UTF_8).write(csv);
+
+        if (baseline == null) {
+            return;
+        }
+        if (!baseline.isFile()) {
+            Files.asCharSink(baseline, StandardCharsets.UTF_8).write(csv);
+            System.out.println("wrote baseline " + baseline);
+            return;
+        }
+        boolean regressed = false;
+        for (String line : Files.asCharSource(baseline, StandardCharsets.UTF_8).readLines()) {
+            if (line.isEmpty() || line.equals(HEADER)) {
+                continue;
+            }
+            String[] columns = line.split(",");
+            double[] current = results.get(Integer.parseInt(columns[0]));
+            if (current == null) {
+                continue;
+            }
+            double before = processorMillis(Double.parseDouble(columns[3]), Double.parseDouble(columns[4]), Double.parseDouble(columns[5]));
+            double after = processorMillis(current[2], current[3], current[4]);
+            if (after > before * (1 + tolerance)) {
+                System.out.println(String.format("REGRESSION: %s methods took %.1f ms in the processor, baseline %.1f ms",
+                        columns[0], after, before));
+                regressed = true;
+            }
+        }
+        if (regressed && failOnRegression) {
+            System.exit(1);
+        }
+    }
+
+    private static double[] run(int methods, File directory) throws Exception {
+        MetaMethodProcessor processor = new MetaMethodProcessor();
+        Map<Long, Long> allocatedBefore = allocatedBytes();
+        long start = System.nanoTime();
+        SyntheticSources.compile(methods, directory, processor);
+        long wall = System.nanoTime() - start;
+        long allocated = 0;
+        for (Map.Entry<Long, Long> thread : allocatedBytes().entrySet()) {
+            Long before = allocatedBefore.get(thread.getKey());
+            allocated += thread.getValue() - (before == null ? 0 : before);
+        }
+        return new double[]{wall / 1e6, allocated, processor.collectNanos / 1e6, processor.renderNanos / 1e6,
+                processor.writeNanos / 1e6};
+    }
+
+    //bytes allocated so far by each live thread, so the pool threads rendering sources are counted too. A thread
+    //which ends during a run takes its allocations with it, but the common pool's threads outlive the warmup runs
+    private static Map<Long, Long> allocatedBytes() {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long[] ids = threads.getAllThreadIds();
+        long[] allocated = threads.getThreadAllocatedBytes(ids);
+        Map<Long, Long> byThread = Maps.newHashMap();
+        for (int i = 0; i < ids.length; i++) {
+            if (allocated[i] >= 0) {
+                byThread.put(ids[i], allocated[i]);
+            }
+        }
+        return byThread;
+    }
+
+    private static double processorMillis(double collect, double render, double write) {
+        return collect + render + write;
+    }
+
+    private static double[] median(List<double[]> runs) {
+        double[] median = new double[runs.get(0).length];
+        for (int column = 0; column < median.length; column++) {
+            List<Double> values = Lists.newArrayList();
+            for (double[] run : runs) {
+                values.add(run[column]);
+            }
+            Collections.sort(values);
+            median[column] = values.get(values.size() / 2);
+        }
+        return median;
+    }
+}
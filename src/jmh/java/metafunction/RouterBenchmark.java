@@ -0,0 +1,149 @@
+package metafunction;
+
+import com.google.common.collect.Maps;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Dispatch through a router shaped like the RouterExample in MetaFunctionTest: thousands of handlers of
+ * mixed arity behind a map, called with a shuffled sequence of paths so the call site stays megamorphic.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RouterBenchmark {
+
+    static class Router extends Router_MetaFunction<Object> {
+        final Map<String, MetaFunction<Object>> handlers = Maps.newHashMap();
+
+        @MetaMethod Router route(String path, MetaFunction<Object> handler) {
+            handlers.put(path, handler);
+            return this;
+        }
+
+        public Object apply(String path, Object... args) {
+            return handlers.get(path).apply(args);
+        }
+    }
+
+    static class RegistryRouter extends RegistryRouter_MetaFunction<Object> {
+        final MetaFunctionRegistry<String, Object> routes = new MetaFunctionRegistry<>();
+
+        @MetaMethod RegistryRouter route(String path, MetaFunction<Object> handler) {
+            routes.register(path, handler);
+            return this;
+        }
+    }
+
+    /** one registry read by every benchmark thread, to compare lookups under four concurrent readers with one */
+    @State(Scope.Benchmark)
+    public static class SharedRegistry {
+        final MetaFunctionRegistry<String, Object> routes = new MetaFunctionRegistry<>();
+        final String[] paths = new String[CALLS];
+
+        @Setup public void setUp() {
+            for (int i = 0; i < 10000; i++) {
+                final int id = i;
+                routes.register("/handler/" + i, new MetaFunction.Arity0<Object>(() -> id));
+            }
+            Random random = new Random(42);
+            for (int i = 0; i < CALLS; i++) {
+                paths[i] = "/handler/" + random.nextInt(10000);
+            }
+        }
+    }
+
+    static final int CALLS = 1 << 12;
+
+    @Param({"1000", "10000"})
+    int handlers;
+
+    Router router;
+    RegistryRouter registryRouter;
+    String[] paths;
+    Object[][] args;
+    int next;
+
+    @Setup public void setUp() {
+        router = new Router();
+        registryRouter = new RegistryRouter();
+        for (int i = 0; i < handlers; i++) {
+            final int id = i;
+            switch (i % 4) {
+                case 0:
+                    router.route("/handler/" + i, () -> id);
+                    registryRouter.route("/handler/" + i, () -> id);
+                    break;
+                case 1:
+                    router.route("/handler/" + i, (String a) -> a);
+                    registryRouter.route("/handler/" + i, (String a) -> a);
+                    break;
+                case 2:
+                    router.route("/handler/" + i, (String a, String b) -> b);
+                    registryRouter.route("/handler/" + i, (String a, String b) -> b);
+                    break;
+                default:
+                    router.route("/handler/" + i, (String a, String b, String c) -> c);
+                    registryRouter.route("/handler/" + i, (String a, String b, String c) -> c);
+                    break;
+            }
+        }
+        Random random = new Random(42);
+        paths = new String[CALLS];
+        args = new Object[CALLS][];
+        for (int i = 0; i < CALLS; i++) {
+            int handler = random.nextInt(handlers);
+            paths[i] = "/handler/" + handler;
+            args[i] = new Object[handler % 4];
+            for (int a = 0; a < args[i].length; a++) {
+                args[i][a] = "arg" + a;
+            }
+        }
+    }
+
+    @Benchmark public Object route() {
+        int call = next++ & (CALLS - 1);
+        return router.apply(paths[call], args[call]);
+    }
+
+    @Benchmark public Object registry() {
+        int call = next++ & (CALLS - 1);
+        return registryRouter.routes.apply(paths[call], args[call]);
+    }
+
+    //the same calls through a reused ArgFrame; -prof gc should show no allocation
+    @Benchmark public Object registryFrame() {
+        int call = next++ & (CALLS - 1);
+        ArgFrame frame = ArgFrame.current();
+        for (Object arg : args[call]) {
+            frame.add(arg);
+        }
+        return registryRouter.routes.apply(paths[call], frame);
+    }
+
+    @Benchmark public Object registryShared(SharedRegistry shared) {
+        int call = next++ & (CALLS - 1);
+        return shared.routes.apply(shared.paths[call]);
+    }
+
+    @Benchmark @Threads(4) public Object registrySharedContended(SharedRegistry shared) {
+        return registryShared(shared);
+    }
+}
@@ -0,0 +1,57 @@
+package metafunction;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cold start of generated code: loading a synthetic class with 10, 100 or 1000 meta methods, along with its
+ * generated superclass, and linking one handler per meta method. Each shot uses a fresh class loader, and each
+ * fork starts a fresh JVM, so the first shots show a cold start. See StartupReport for bytecode and metaspace sizes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 10)
+@Fork(3)
+public class StartupBenchmark {
+
+    @Param({"10", "100", "1000"})
+    int methods;
+
+    File directory;
+    URL classes;
+
+    @Setup public void setUp() throws Exception {
+        directory = SyntheticSources.tempDirectory();
+        classes = SyntheticSources.compile(methods, directory).classes.toURI().toURL();
+    }
+
+    @TearDown public void tearDown() {
+        SyntheticSources.delete(directory);
+    }
+
+    @Benchmark public Object loadAndLink() throws Exception {
+        try (URLClassLoader loader = new URLClassLoader(new URL[]{classes}, StartupBenchmark.class.getClassLoader())) {
+            Runnable synthetic = (Runnable) Class.forName(SyntheticSources.qualifiedName(methods), true, loader)
+                    .getDeclaredConstructor().newInstance();
+            synthetic.run();
+            return synthetic;
+        }
+    }
+}
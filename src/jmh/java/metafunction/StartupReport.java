@@ -0,0 +1,86 @@
+package metafunction;
+
+import com.google.common.io.Files;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Measures what generated code costs at startup: for synthetic classes with 10, 100 and 1000 meta methods, the
+ * bytecode size of the generated class, its synthetic lambda methods, and the time and metaspace taken to load
+ * it and link one handler per meta method. Each size is loaded in its own class loader, so nothing is shared
+ * between them but the metafunction runtime.
+ *
+ *     gradle startupReport [-Psizes=10,100,1000]
+ *
+ * Results are printed, and written as CSV to the file named by the first argument. The second argument is a
+ * comma-separated list of sizes.
+ */
+public class StartupReport {
+
+    public static void main(String[] args) throws Exception {
+        String[] sizes = args.length > 1 ? args[1].split(",") : new String[]{"10", "100", "1000"};
+        StringBuilder csv = new StringBuilder("methods,generatedBytes,userBytes,lambdaMethods,loadMillis,metaspaceBytes\n");
+        File work = SyntheticSources.tempDirectory();
+        try {
+            for (String size : sizes) {
+                int methods = Integer.parseInt(size.trim());
+                SyntheticSources.Compilation compilation = SyntheticSources.compile(methods,
+                        new File(work, String.valueOf(methods)), MetaMethodProcessor.SIZE_REPORT_OPTION + "=true");
+                for (String note : compilation.notes()) {
+                    System.out.println(note);
+                }
+                long generatedBytes = 0;
+                for (File classFile : compilation.generatedClassFiles()) {
+                    generatedBytes += classFile.length();
+                }
+                long userBytes = compilation.userClassFile().length();
+
+                long metaspaceBefore = metaspaceUsed();
+                long start = System.nanoTime();
+                try (URLClassLoader loader = new URLClassLoader(new URL[]{compilation.classes.toURI().toURL()},
+                        StartupReport.class.getClassLoader())) {
+                    Class<?> loaded = Class.forName(SyntheticSources.qualifiedName(methods), true, loader);
+                    ((Runnable) loaded.getDeclaredConstructor().newInstance()).run();
+                    long loadNanos = System.nanoTime() - start;
+                    long metaspaceBytes = metaspaceUsed() - metaspaceBefore;
+                    int lambdaMethods = lambdaMethods(loaded) + lambdaMethods(loaded.getSuperclass());
+
+                    String row = String.format("%d,%d,%d,%d,%.3f,%d", methods, generatedBytes, userBytes, lambdaMethods,
+                            loadNanos / 1e6, metaspaceBytes);
+                    System.out.println(row);
+                    csv.append(row).append('\n');
+                }
+            }
+        } finally {
+            SyntheticSources.delete(work);
+        }
+        if (args.length > 0) {
+            Files.asCharSink(new File(args[0]), StandardCharsets.UTF_8).write(csv);
+        }
+    }
+
+    private static int lambdaMethods(Class<?> type) {
+        int lambdas = 0;
+        for (Method method : type.getDeclaredMethods()) {
+            if (method.isSynthetic() && method.getName().startsWith("lambda$")) {
+                lambdas++;
+            }
+        }
+        return lambdas;
+    }
+
+    private static long metaspaceUsed() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getName().equals("Metaspace")) {
+                return pool.getUsage().getUsed();
+            }
+        }
+        return 0;
+    }
+}
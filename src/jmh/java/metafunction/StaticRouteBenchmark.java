@@ -0,0 +1,83 @@
+package metafunction;
+
+import com.google.common.collect.Maps;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A route table known at compile time: a HashMap lookup and varargs call against the dispatch methods generated
+ * for {@code @Route}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StaticRouteBenchmark {
+    static final String[] PATHS = {"/users", "/user", "/orders", "/order", "/items", "/item", "/carts", "/cart"};
+
+    static class MapRouter extends MapRouter_MetaFunction<Object> {
+        final Map<String, MetaFunction<Object>> handlers = Maps.newHashMap();
+
+        @MetaMethod MapRouter route(String path, MetaFunction<Object> handler) {
+            handlers.put(path, handler);
+            return this;
+        }
+
+        public Object apply(String path, Object... args) {
+            return handlers.get(path).apply(args);
+        }
+    }
+
+    static class SwitchRouter extends SwitchRouter_MetaFunction<Object> {
+        @Route({"/users", "/user", "/orders", "/order", "/items", "/item", "/carts", "/cart"})
+        @MetaMethod SwitchRouter route(String path, MetaFunction<Object> handler) {
+            return this;
+        }
+    }
+
+    static final int CALLS = 1 << 10;
+
+    MapRouter mapRouter;
+    SwitchRouter switchRouter;
+    int[] routes;
+    int next;
+
+    @Setup public void setUp() {
+        mapRouter = new MapRouter();
+        switchRouter = new SwitchRouter();
+        for (int i = 0; i < PATHS.length; i += 2) {
+            final int id = i;
+            mapRouter.route(PATHS[i], () -> id).route(PATHS[i + 1], (String a) -> a);
+            switchRouter.route(PATHS[i], () -> id).route(PATHS[i + 1], (String a) -> a);
+        }
+        Random random = new Random(42);
+        routes = new int[CALLS];
+        for (int i = 0; i < CALLS; i++) {
+            routes[i] = random.nextInt(PATHS.length);
+        }
+    }
+
+    @Benchmark public Object map() {
+        int route = routes[next++ & (CALLS - 1)];
+        return (route & 1) == 0 ? mapRouter.apply(PATHS[route]) : mapRouter.apply(PATHS[route], "arg");
+    }
+
+    @Benchmark public Object dispatch() {
+        int route = routes[next++ & (CALLS - 1)];
+        return (route & 1) == 0 ? switchRouter.dispatch(PATHS[route]) : switchRouter.dispatch(PATHS[route], "arg");
+    }
+}
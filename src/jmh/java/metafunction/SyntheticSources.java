@@ -0,0 +1,168 @@
+package metafunction;
+
+import com.google.common.base.Joiner;
+import com.google.common.collect.Lists;
+import com.google.common.io.Files;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Generates classes with a given number of {@code @MetaMethod}s and compiles them through MetaMethodProcessor,
+ * for benchmarks of the processor and of the code it generates.
+ */
+final class SyntheticSources {
+    static final String PACKAGE = "synthetic";
+    //the arities the synthetic handlers cycle through
+    static final int ARITIES = 4;
+    private static final Joiner PARAMS = Joiner.on(", ");
+
+    private SyntheticSources() {
+    }
+
+    static String className(int methods) {
+        return "Synthetic" + methods;
+    }
+
+    static String qualifiedName(int methods) {
+        return PACKAGE + "." + className(methods);
+    }
+
+    /**
+     * A class with {@code methods} meta methods, whose run() passes each of them one lambda.
+     */
+    static String source(int methods) {
+        String className = className(methods);
+        StringBuilder source = new StringBuilder()
+                .append("package ").append(PACKAGE).append(";\n\n")
+                .append("import metafunction.MetaFunction;\n")
+                .append("import metafunction.MetaMethod;\n\n")
+                .append("public class ").append(className).append(" extends ").append(className)
+                .append("_MetaFunction<Object> implements Runnable {\n")
+                .append("    public Object handler;\n\n");
+        for (int m = 0; m < methods; m++) {
+            source.append("    @MetaMethod void handle").append(m)
+                    .append("(MetaFunction<Object> handler) { this.handler = handler; }\n");
+        }
+        source.append("\n    public void run() {\n");
+        for (int m = 0; m < methods; m++) {
+            List<String> params = Lists.newArrayList();
+            for (int p = 0; p < m % ARITIES; p++) {
+                params.add("Object p" + p);
+            }
+            source.append("        handle").append(m).append("((").append(PARAMS.join(params))
+                    .append(") -> ").append(params.isEmpty() ? "null" : "p0").append(");\n");
+        }
+        return source.append("    }\n}\n").toString();
+    }
+
+    /**
+     * Writes the synthetic class for {@code methods} meta methods under {@code directory} and compiles it
+     * in-process, with the processor on the current classpath. Classes go to {@code directory/classes} and
+     * generated sources to {@code directory/generated}.
+     */
+    static Compilation compile(int methods, File directory, String... processorOptions) throws IOException {
+        return compile(methods, directory, new MetaMethodProcessor(), processorOptions);
+    }
+
+    /**
+     * Like {@link #compile(int, File, String...)}, running {@code processor}, so its timings can be read afterwards.
+     */
+    static Compilation compile(int methods, File directory, MetaMethodProcessor processor, String... processorOptions)
+            throws IOException {
+        File sources = new File(directory, "src/" + PACKAGE);
+        File classes = new File(directory, "classes");
+        File generated = new File(directory, "generated");
+        for (File dir : Arrays.asList(sources, classes, generated)) {
+            if (!dir.isDirectory() && !dir.mkdirs()) {
+                throw new IOException("could not create " + dir);
+            }
+        }
+        File source = new File(sources, className(methods) + ".java");
+        Files.asCharSink(source, StandardCharsets.UTF_8).write(source(methods));
+
+        List<String> options = Lists.newArrayList(
+                "-classpath", System.getProperty("java.class.path"),
+                "-d", classes.getPath(),
+                "-s", generated.getPath());
+        for (String option : processorOptions) {
+            options.add("-A" + option);
+        }
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        try (StandardJavaFileManager fileManager = compiler.getStandardFileManager(diagnostics, null, StandardCharsets.UTF_8)) {
+            JavaCompiler.CompilationTask task = compiler.getTask(null, fileManager, diagnostics, options, null,
+                    fileManager.getJavaFileObjects(source));
+            task.setProcessors(Collections.singletonList(processor));
+            boolean success = task.call();
+            if (!success) {
+                throw new IllegalStateException("synthetic class with " + methods + " meta methods did not compile: "
+                        + diagnostics.getDiagnostics());
+            }
+        }
+        return new Compilation(methods, classes, diagnostics.getDiagnostics());
+    }
+
+    /** a new directory to compile into, for the caller to remove with {@link #delete(File)} */
+    static File tempDirectory() throws IOException {
+        return java.nio.file.Files.createTempDirectory("metafunction").toFile();
+    }
+
+    static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    static final class Compilation {
+        final int methods;
+        final File classes;
+        final List<Diagnostic<? extends JavaFileObject>> diagnostics;
+
+        Compilation(int methods, File classes, List<Diagnostic<? extends JavaFileObject>> diagnostics) {
+            this.methods = methods;
+            this.classes = classes;
+            this.diagnostics = diagnostics;
+        }
+
+        /** the compiled class files for the generated {@code _MetaFunction} class, including nested types */
+        List<File> generatedClassFiles() {
+            List<File> files = Lists.newArrayList();
+            File[] candidates = new File(classes, PACKAGE).listFiles();
+            for (File file : candidates == null ? new File[0] : candidates) {
+                if (file.getName().startsWith(className(methods) + "_MetaFunction")) {
+                    files.add(file);
+                }
+            }
+            return files;
+        }
+
+        File userClassFile() {
+            return new File(classes, PACKAGE + "/" + className(methods) + ".class");
+        }
+
+        List<String> notes() {
+            List<String> notes = Lists.newArrayList();
+            for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics) {
+                if (diagnostic.getKind() == Diagnostic.Kind.NOTE) {
+                    notes.add(diagnostic.getMessage(null));
+                }
+            }
+            return notes;
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package metafunction;
+
+import java.util.Arrays;
+
+/**
+ * A reusable list of arguments, for calls whose arity is only known at runtime. Where
+ * {@code function.apply(a, b, c)} allocates a varargs array on every call,
+ *
+ * <pre>
+ *     function.apply(ArgFrame.current().add(a).add(b).add(c))
+ * </pre>
+ *
+ * fills the calling thread's frame and passes its arguments on to the function's fixed-arity entry point, so
+ * steady-state calls of up to 10 arguments allocate nothing. {@link MetaFunction#apply(ArgFrame)} empties the
+ * frame before it calls the function, so the frame never holds on to arguments after a call, and the function
+ * may itself fill {@link #current()} for calls of its own.
+ *
+ * A frame is not thread-safe. Use {@link #current()}, or give each thread or pooled worker its own.
+ */
+public final class ArgFrame {
+    //enough for the widest ArityN invoker without growing
+    static final int DEFAULT_CAPACITY = 10;
+    private static final ThreadLocal<ArgFrame> CURRENT = new ThreadLocal<ArgFrame>() {
+        @Override protected ArgFrame initialValue() {
+            return new ArgFrame();
+        }
+    };
+
+    Object[] slots;
+    int size;
+
+    public ArgFrame() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public ArgFrame(int capacity) {
+        slots = new Object[capacity];
+    }
+
+    /**
+     * @return the calling thread's frame, emptied of anything left from a call that was never made.
+     */
+    public static ArgFrame current() {
+        return CURRENT.get().clear();
+    }
+
+    public ArgFrame add(Object arg) {
+        if (size == slots.length) {
+            slots = Arrays.copyOf(slots, Math.max(1, size * 2));
+        }
+        slots[size++] = arg;
+        return this;
+    }
+
+    public Object get(int index) {
+        if (index >= size) {
+            throw new IndexOutOfBoundsException(index + " of " + size + " arguments");
+        }
+        return slots[index];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Empties this frame, dropping its references to the arguments.
+     */
+    public ArgFrame clear() {
+        Arrays.fill(slots, 0, size, null);
+        size = 0;
+        return this;
+    }
+
+    public Object[] toArray() {
+        return Arrays.copyOf(slots, size);
+    }
+}
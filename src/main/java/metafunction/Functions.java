@@ -17,4 +17,15 @@ public class Functions {
     public interface F9<T1, T2, T3, T4, T5, T6, T7, T8, T9, R> extends F<R> { R apply(T1 p1, T2 p2, T3 p3, T4 p4, T5 p5, T6 pc, T7 p7, T8 p8, T9 p9); }
     public interface F10<T1, T2, T3, T4, T5, T6, T7, T8, T9, T10, R> extends F<R> { R apply(T1 p1, T2 p2, T3 p3, T4 p4, T5 p5, T6 pc, T7 p7, T8 p8, T9 p9, T10 p10); }
 
+    //primitive specializations, so numeric handlers don't box their arguments or result
+    public interface IntF1 extends F<Integer> { int apply(int p1); }
+    public interface IntF2 extends F<Integer> { int apply(int p1, int p2); }
+    public interface IntF3 extends F<Integer> { int apply(int p1, int p2, int p3); }
+    public interface LongF1 extends F<Long> { long apply(long p1); }
+    public interface LongF2 extends F<Long> { long apply(long p1, long p2); }
+    public interface LongF3 extends F<Long> { long apply(long p1, long p2, long p3); }
+    public interface DoubleF1 extends F<Double> { double apply(double p1); }
+    public interface DoubleF2 extends F<Double> { double apply(double p1, double p2); }
+    public interface DoubleF3 extends F<Double> { double apply(double p1, double p2, double p3); }
+
 }
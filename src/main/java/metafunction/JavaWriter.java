@@ -37,19 +37,37 @@ public final class JavaWriter implements Closeable {
     private static final Pattern TYPE_PATTERN = Pattern.compile("(?:[\\w$]+\\.)*([\\w$]+)");
     private static final String INDENT = "  ";
 
+    /** Flush to the Writer once this many chars are buffered. */
+    private static final int FLUSH_SIZE = 8192;
+
     /** Map fully qualified type names to their short names. */
     private final Map<String, String> importedTypes = new HashMap<String, String>();
+    /** Type strings already shortened by {@link #type}, until the imports change. */
+    private final Map<String, String> resolvedTypes = new HashMap<String, String>();
 
     private String packagePrefix;
     private final List<Scope> scopes = new ArrayList<Scope>();
     private final Writer out;
+    private final StringBuilder buffer;
 
     /**
-     * @param out the stream to which Java source will be written. This should be
-     *     a buffered stream.
+     * @param out the stream to which Java source will be written. Output is
+     *     buffered and flushed to it in whole lines, once at least 8192 chars
+     *     are buffered, and the rest on {@link #close}. Until then {@code out}
+     *     may be missing the most recently emitted source.
      */
     public JavaWriter(Writer out) {
         this.out = out;
+        this.buffer = new StringBuilder(FLUSH_SIZE * 2);
+    }
+
+    /**
+     * Writes Java source to the end of {@code buffer}, e.g. one reused between
+     * files.
+     */
+    public JavaWriter(StringBuilder buffer) {
+        this.out = null;
+        this.buffer = buffer;
     }
 
     /**
@@ -62,11 +80,12 @@ public final class JavaWriter implements Closeable {
         if (packageName.isEmpty()) {
             this.packagePrefix = "";
         } else {
-            out.write("package ");
-            out.write(packageName);
-            out.write(";\n");
+            buffer.append("package ");
+            buffer.append(packageName);
+            buffer.append(";\n");
             this.packagePrefix = packageName + ".";
         }
+        resolvedTypes.clear();
     }
 
     /**
@@ -88,9 +107,10 @@ public final class JavaWriter implements Closeable {
         if (importedTypes.put(type, matcher.group(1)) != null) {
             throw new IllegalArgumentException(type);
         }
-        out.write("import ");
-        out.write(type);
-        out.write(";\n");
+        resolvedTypes.clear();
+        buffer.append("import ");
+        buffer.append(type);
+        buffer.append(";\n");
     }
 
     /**
@@ -102,7 +122,17 @@ public final class JavaWriter implements Closeable {
         if (this.packagePrefix == null) {
             throw new IllegalStateException();
         }
+        String resolved = resolvedTypes.get(type);
+        if (resolved == null) {
+            int start = buffer.length();
+            resolve(type);
+            resolvedTypes.put(type, buffer.substring(start));
+        } else {
+            buffer.append(resolved);
+        }
+    }
 
+    private void resolve(String type) {
         Matcher m = TYPE_PATTERN.matcher(type);
         int pos = 0;
         while (true) {
@@ -110,7 +140,7 @@ public final class JavaWriter implements Closeable {
 
             // copy non-matching characters like "<"
             int typeStart = found ? m.start() : type.length();
-            out.write(type, pos, typeStart - pos);
+            buffer.append(type, pos, typeStart);
 
             if (!found) {
                 break;
@@ -120,14 +150,14 @@ public final class JavaWriter implements Closeable {
             String name = m.group(0);
             String imported;
             if ((imported = importedTypes.get(name)) != null) {
-                out.write(imported);
+                buffer.append(imported);
             } else if (name.startsWith(packagePrefix)
                     && name.indexOf('.', packagePrefix.length()) == -1) {
-                out.write(name.substring(packagePrefix.length()));
+                buffer.append(name.substring(packagePrefix.length()));
             } else if (name.startsWith("java.lang.")) {
-                out.write(name.substring("java.lang.".length()));
+                buffer.append(name.substring("java.lang.".length()));
             } else {
-                out.write(name);
+                buffer.append(name);
             }
             pos = m.end();
         }
@@ -152,27 +182,27 @@ public final class JavaWriter implements Closeable {
                           String extendsType, String... implementsTypes) throws IOException {
         indent();
         modifiers(modifiers);
-        out.write(kind);
-        out.write(" ");
+        buffer.append(kind);
+        buffer.append(" ");
         type(type);
         if (extendsType != null) {
-            out.write("\n");
+            buffer.append("\n");
             indent();
-            out.write("    extends ");
+            buffer.append("    extends ");
             type(extendsType);
         }
         if (implementsTypes.length > 0) {
-            out.write("\n");
+            buffer.append("\n");
             indent();
-            out.write("    implements ");
+            buffer.append("    implements ");
             for (int i = 0; i < implementsTypes.length; i++) {
                 if (i != 0) {
-                    out.write(", ");
+                    buffer.append(", ");
                 }
                 type(implementsTypes[i]);
             }
         }
-        out.write(" {\n");
+        buffer.append(" {\n");
         pushScope(Scope.TYPE_DECLARATION);
     }
 
@@ -182,7 +212,7 @@ public final class JavaWriter implements Closeable {
     public void endType() throws IOException {
         popScope(Scope.TYPE_DECLARATION);
         indent();
-        out.write("}\n");
+        buffer.append("}\n");
     }
 
     /**
@@ -197,14 +227,14 @@ public final class JavaWriter implements Closeable {
         indent();
         modifiers(modifiers);
         type(type);
-        out.write(" ");
-        out.write(name);
+        buffer.append(" ");
+        buffer.append(name);
 
         if (initialValue != null) {
-            out.write(" = ");
-            out.write(initialValue);
+            buffer.append(" = ");
+            buffer.append(initialValue);
         }
-        out.write(";\n");
+        buffer.append(";\n");
     }
 
     /**
@@ -221,26 +251,26 @@ public final class JavaWriter implements Closeable {
         modifiers(modifiers);
         if (returnType != null) {
             type(returnType);
-            out.write(" ");
-            out.write(name);
+            buffer.append(" ");
+            buffer.append(name);
         } else {
             type(name);
         }
-        out.write("(");
+        buffer.append("(");
         for (int p = 0; p < parameters.length;) {
             if (p != 0) {
-                out.write(", ");
+                buffer.append(", ");
             }
             type(parameters[p++]);
-            out.write(" ");
+            buffer.append(" ");
             type(parameters[p++]);
         }
-        out.write(")");
+        buffer.append(")");
         if ((modifiers & Modifier.ABSTRACT) != 0) {
-            out.write(";\n");
+            buffer.append(";\n");
             pushScope(Scope.ABSTRACT_METHOD);
         } else {
-            out.write(" {\n");
+            buffer.append(" {\n");
             pushScope(Scope.NON_ABSTRACT_METHOD);
         }
     }
@@ -276,31 +306,31 @@ public final class JavaWriter implements Closeable {
      */
     public void annotation(String annotation, Map<String, ?> attributes) throws IOException {
         indent();
-        out.write("@");
+        buffer.append("@");
         type(annotation);
         if (!attributes.isEmpty()) {
-            out.write("(");
+            buffer.append("(");
             pushScope(Scope.ANNOTATION_ATTRIBUTE);
             boolean firstAttribute = true;
             for (Map.Entry<String, ?> entry : attributes.entrySet()) {
                 if (firstAttribute) {
                     firstAttribute = false;
-                    out.write("\n");
+                    buffer.append("\n");
                 } else {
-                    out.write(",\n");
+                    buffer.append(",\n");
                 }
                 indent();
-                out.write(entry.getKey());
-                out.write(" = ");
+                buffer.append(entry.getKey());
+                buffer.append(" = ");
                 Object value = entry.getValue();
                 annotationValue(value);
             }
             popScope(Scope.ANNOTATION_ATTRIBUTE);
-            out.write("\n");
+            buffer.append("\n");
             indent();
-            out.write(")");
+            buffer.append(")");
         }
-        out.write("\n");
+        buffer.append("\n");
     }
 
     /**
@@ -309,25 +339,25 @@ public final class JavaWriter implements Closeable {
      */
     private void annotationValue(Object value) throws IOException {
         if (value instanceof Object[]) {
-            out.write("{");
+            buffer.append("{");
             boolean firstValue = true;
             pushScope(Scope.ANNOTATION_ARRAY_VALUE);
             for (Object o : ((Object[]) value)) {
                 if (firstValue) {
                     firstValue = false;
-                    out.write("\n");
+                    buffer.append("\n");
                 } else {
-                    out.write(",\n");
+                    buffer.append(",\n");
                 }
                 indent();
-                out.write(o.toString());
+                buffer.append(o.toString());
             }
             popScope(Scope.ANNOTATION_ARRAY_VALUE);
-            out.write("\n");
+            buffer.append("\n");
             indent();
-            out.write("}");
+            buffer.append("}");
         } else {
-            out.write(value.toString());
+            buffer.append(value.toString());
         }
     }
 
@@ -338,8 +368,8 @@ public final class JavaWriter implements Closeable {
     public void statement(String pattern, Object... args) throws IOException {
         checkInMethod();
         indent();
-        out.write(String.format(pattern, args));
-        out.write(";\n");
+        buffer.append(String.format(pattern, args));
+        buffer.append(";\n");
     }
 
     /**
@@ -349,8 +379,8 @@ public final class JavaWriter implements Closeable {
     public void beginControlFlow(String controlFlow) throws IOException {
         checkInMethod();
         indent();
-        out.write(controlFlow);
-        out.write(" {\n");
+        buffer.append(controlFlow);
+        buffer.append(" {\n");
         pushScope(Scope.CONTROL_FLOW);
     }
 
@@ -362,9 +392,9 @@ public final class JavaWriter implements Closeable {
         popScope(Scope.CONTROL_FLOW);
         indent();
         pushScope(Scope.CONTROL_FLOW);
-        out.write("} ");
-        out.write(controlFlow);
-        out.write(" {\n");
+        buffer.append("} ");
+        buffer.append(controlFlow);
+        buffer.append(" {\n");
     }
 
     public void endControlFlow() throws IOException {
@@ -379,11 +409,11 @@ public final class JavaWriter implements Closeable {
         popScope(Scope.CONTROL_FLOW);
         indent();
         if (controlFlow != null) {
-            out.write("} ");
-            out.write(controlFlow);
-            out.write(";\n");
+            buffer.append("} ");
+            buffer.append(controlFlow);
+            buffer.append(";\n");
         } else {
-            out.write("}\n");
+            buffer.append("}\n");
         }
     }
 
@@ -394,7 +424,7 @@ public final class JavaWriter implements Closeable {
         Scope popped = popScope();
         if (popped == Scope.NON_ABSTRACT_METHOD) {
             indent();
-            out.write("}\n");
+            buffer.append("}\n");
         } else if (popped != Scope.ABSTRACT_METHOD) {
             throw new IllegalStateException();
         }
@@ -440,7 +470,15 @@ public final class JavaWriter implements Closeable {
     }
 
     @Override public void close() throws IOException {
-        out.close();
+        if (out != null) {
+            flush();
+            out.close();
+        }
+    }
+
+    private void flush() throws IOException {
+        out.append(buffer);
+        buffer.setLength(0);
     }
 
     /**
@@ -448,37 +486,41 @@ public final class JavaWriter implements Closeable {
      */
     private void modifiers(int modifiers) throws IOException {
         if ((modifiers & Modifier.PUBLIC) != 0) {
-            out.write("public ");
+            buffer.append("public ");
         }
         if ((modifiers & Modifier.PRIVATE) != 0) {
-            out.write("private ");
+            buffer.append("private ");
         }
         if ((modifiers & Modifier.PROTECTED) != 0) {
-            out.write("protected ");
+            buffer.append("protected ");
         }
         if ((modifiers & Modifier.STATIC) != 0) {
-            out.write("static ");
+            buffer.append("static ");
         }
         if ((modifiers & Modifier.FINAL) != 0) {
-            out.write("final ");
+            buffer.append("final ");
         }
         if ((modifiers & Modifier.ABSTRACT) != 0) {
-            out.write("abstract ");
+            buffer.append("abstract ");
         }
         if ((modifiers & Modifier.SYNCHRONIZED) != 0) {
-            out.write("synchronized ");
+            buffer.append("synchronized ");
         }
         if ((modifiers & Modifier.TRANSIENT) != 0) {
-            out.write("transient ");
+            buffer.append("transient ");
         }
         if ((modifiers & Modifier.VOLATILE) != 0) {
-            out.write("volatile ");
+            buffer.append("volatile ");
         }
     }
 
     private void indent() throws IOException {
+        //every line starts here, so this is where a full buffer goes out
+        if (out != null && buffer.length() >= FLUSH_SIZE) {
+            flush();
+        }
         for (int i = 0; i < scopes.size(); i++) {
-            out.write(INDENT);
+            buffer.append(INDENT);
         }
     }
 
@@ -0,0 +1,195 @@
+package metafunction;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.util.concurrent.ExecutionError;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Caches the results of a pure MetaFunction by its arguments. See {@link MetaFunction#memoized}.
+ *
+ * The cache is bounded, evicting the least recently used results, and is split into one independently
+ * locked segment per core. Up to three arguments are keyed without copying them into an array; calls
+ * with more arguments key on a copy of the argument array, so callers may reuse their array.
+ */
+public final class MemoizedMetaFunction<T> extends MetaFunction<T> {
+    private static final Object NULL = new Object();
+
+    private final MetaFunction<T> function;
+    private final Cache<Object, Object> cache;
+
+    MemoizedMetaFunction(MetaFunction<T> function, long maximumSize, long expireAfterWrite, TimeUnit unit) {
+        this.function = function;
+        CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder()
+                .maximumSize(maximumSize)
+                .concurrencyLevel(Runtime.getRuntime().availableProcessors())
+                .recordStats();
+        if (expireAfterWrite > 0) {
+            builder.expireAfterWrite(expireAfterWrite, unit);
+        }
+        this.cache = builder.build();
+    }
+
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    @Override public int arity() {
+        return function.arity();
+    }
+
+    @Override public T apply(Object... args) {
+        Object key;
+        switch (args.length) {
+            case 0: key = Key0.INSTANCE; break;
+            case 1: key = new Key1(args[0]); break;
+            case 2: key = new Key2(args[0], args[1]); break;
+            case 3: key = new Key3(args[0], args[1], args[2]); break;
+            default: key = new KeyN(args);
+        }
+        Object result = cache.getIfPresent(key);
+        return result != null ? unmask(result) : load(key, () -> function.apply(args));
+    }
+
+    @Override public T apply0() {
+        Object result = cache.getIfPresent(Key0.INSTANCE);
+        return result != null ? unmask(result) : load(Key0.INSTANCE, function::apply0);
+    }
+
+    @Override public T apply1(Object a) {
+        Key1 key = new Key1(a);
+        Object result = cache.getIfPresent(key);
+        return result != null ? unmask(result) : load(key, () -> function.apply1(a));
+    }
+
+    @Override public T apply2(Object a, Object b) {
+        Key2 key = new Key2(a, b);
+        Object result = cache.getIfPresent(key);
+        return result != null ? unmask(result) : load(key, () -> function.apply2(a, b));
+    }
+
+    @Override public T apply3(Object a, Object b, Object c) {
+        Key3 key = new Key3(a, b, c);
+        Object result = cache.getIfPresent(key);
+        return result != null ? unmask(result) : load(key, () -> function.apply3(a, b, c));
+    }
+
+    private T load(Object key, Loader<T> loader) {
+        try {
+            return unmask(cache.get(key, () -> {
+                T result = loader.load();
+                return result == null ? NULL : result;
+            }));
+        } catch (UncheckedExecutionException | ExecutionError e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw (Error) cause;
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T unmask(Object result) {
+        return result == NULL ? null : (T) result;
+    }
+
+    interface Loader<T> {
+        T load();
+    }
+
+    static final class Key0 {
+        static final Key0 INSTANCE = new Key0();
+    }
+
+    static final class Key1 {
+        final Object a;
+
+        Key1(Object a) {
+            this.a = a;
+        }
+
+        @Override public boolean equals(Object o) {
+            return o instanceof Key1 && Objects.equals(a, ((Key1) o).a);
+        }
+
+        @Override public int hashCode() {
+            return Objects.hashCode(a);
+        }
+    }
+
+    static final class Key2 {
+        final Object a;
+        final Object b;
+
+        Key2(Object a, Object b) {
+            this.a = a;
+            this.b = b;
+        }
+
+        @Override public boolean equals(Object o) {
+            if (!(o instanceof Key2)) {
+                return false;
+            }
+            Key2 other = (Key2) o;
+            return Objects.equals(a, other.a) && Objects.equals(b, other.b);
+        }
+
+        @Override public int hashCode() {
+            return 31 * Objects.hashCode(a) + Objects.hashCode(b);
+        }
+    }
+
+    static final class Key3 {
+        final Object a;
+        final Object b;
+        final Object c;
+
+        Key3(Object a, Object b, Object c) {
+            this.a = a;
+            this.b = b;
+            this.c = c;
+        }
+
+        @Override public boolean equals(Object o) {
+            if (!(o instanceof Key3)) {
+                return false;
+            }
+            Key3 other = (Key3) o;
+            return Objects.equals(a, other.a) && Objects.equals(b, other.b) && Objects.equals(c, other.c);
+        }
+
+        @Override public int hashCode() {
+            return 31 * (31 * Objects.hashCode(a) + Objects.hashCode(b)) + Objects.hashCode(c);
+        }
+    }
+
+    static final class KeyN {
+        final Object[] args;
+
+        KeyN(Object[] args) {
+            //callers reuse their argument arrays, which mustn't change a key once it's cached
+            this.args = args.clone();
+        }
+
+        @Override public boolean equals(Object o) {
+            return o instanceof KeyN && Arrays.equals(args, ((KeyN) o).args);
+        }
+
+        @Override public int hashCode() {
+            return Arrays.hashCode(args);
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package metafunction;
+
+import java.util.functions.Mapper;
+
+/**
+ * The adapters generated {@code @MetaMethod} overloads wrap their function in, as static factories. Generated code
+ * calls these instead of building adapters inline, so every generated class shares the same adapter classes and
+ * call sites, and linking them happens once per process rather than once per overload.
+ */
+@SuppressWarnings({"unchecked", "rawtypes"})
+public final class MetaAdapters {
+    //the same factories as Mappers, for MetaFunction.reuse, which caches adapters per factory class
+    private static final Mapper[] OF = {
+            fn -> of0((Functions.F0) fn), fn -> of1((Functions.F1) fn), fn -> of2((Functions.F2) fn),
+            fn -> of3((Functions.F3) fn), fn -> of4((Functions.F4) fn), fn -> of5((Functions.F5) fn),
+            fn -> of6((Functions.F6) fn), fn -> of7((Functions.F7) fn), fn -> of8((Functions.F8) fn),
+            fn -> of9((Functions.F9) fn), fn -> of10((Functions.F10) fn)};
+    private static final Mapper[] HANDLE = {
+            fn -> handle((Functions.F) fn, 0), fn -> handle((Functions.F) fn, 1), fn -> handle((Functions.F) fn, 2),
+            fn -> handle((Functions.F) fn, 3), fn -> handle((Functions.F) fn, 4), fn -> handle((Functions.F) fn, 5),
+            fn -> handle((Functions.F) fn, 6), fn -> handle((Functions.F) fn, 7), fn -> handle((Functions.F) fn, 8),
+            fn -> handle((Functions.F) fn, 9), fn -> handle((Functions.F) fn, 10)};
+    private static final Mapper[] INT = {null,
+            fn -> ofInt1((Functions.IntF1) fn), fn -> ofInt2((Functions.IntF2) fn), fn -> ofInt3((Functions.IntF3) fn)};
+    private static final Mapper[] LONG = {null,
+            fn -> ofLong1((Functions.LongF1) fn), fn -> ofLong2((Functions.LongF2) fn), fn -> ofLong3((Functions.LongF3) fn)};
+    private static final Mapper[] DOUBLE = {null,
+            fn -> ofDouble1((Functions.DoubleF1) fn), fn -> ofDouble2((Functions.DoubleF2) fn),
+            fn -> ofDouble3((Functions.DoubleF3) fn)};
+    private static final Mapper WIDE = fn -> wide((Functions.F) fn);
+
+    private MetaAdapters() {
+    }
+
+    public static <R> MetaFunction<R> of0(Functions.F0<R> fn) {
+        return new MetaFunction.Arity0<R>(fn);
+    }
+
+    public static <T1, R> MetaFunction<R> of1(Functions.F1<T1, R> fn) {
+        return new MetaFunction.Arity1<T1, R>(fn);
+    }
+
+    public static <T1, T2, R> MetaFunction<R> of2(Functions.F2<T1, T2, R> fn) {
+        return new MetaFunction.Arity2<T1, T2, R>(fn);
+    }
+
+    public static <T1, T2, T3, R> MetaFunction<R> of3(Functions.F3<T1, T2, T3, R> fn) {
+        return new MetaFunction.Arity3<T1, T2, T3, R>(fn);
+    }
+
+    public static <T1, T2, T3, T4, R> MetaFunction<R> of4(Functions.F4<T1, T2, T3, T4, R> fn) {
+        return new MetaFunction.Arity4<T1, T2, T3, T4, R>(fn);
+    }
+
+    public static <T1, T2, T3, T4, T5, R> MetaFunction<R> of5(Functions.F5<T1, T2, T3, T4, T5, R> fn) {
+        return new MetaFunction.Arity5<T1, T2, T3, T4, T5, R>(fn);
+    }
+
+    public static <T1, T2, T3, T4, T5, T6, R> MetaFunction<R> of6(Functions.F6<T1, T2, T3, T4, T5, T6, R> fn) {
+        return new MetaFunction.Arity6<T1, T2, T3, T4, T5, T6, R>(fn);
+    }
+
+    public static <T1, T2, T3, T4, T5, T6, T7, R> MetaFunction<R> of7(Functions.F7<T1, T2, T3, T4, T5, T6, T7, R> fn) {
+        return new MetaFunction.Arity7<T1, T2, T3, T4, T5, T6, T7, R>(fn);
+    }
+
+    public static <T1, T2, T3, T4, T5, T6, T7, T8, R> MetaFunction<R> of8(Functions.F8<T1, T2, T3, T4, T5, T6, T7, T8, R> fn) {
+        return new MetaFunction.Arity8<T1, T2, T3, T4, T5, T6, T7, T8, R>(fn);
+    }
+
+    public static <T1, T2, T3, T4, T5, T6, T7, T8, T9, R> MetaFunction<R> of9(Functions.F9<T1, T2, T3, T4, T5, T6, T7, T8, T9, R> fn) {
+        return new MetaFunction.Arity9<T1, T2, T3, T4, T5, T6, T7, T8, T9, R>(fn);
+    }
+
+    public static <T1, T2, T3, T4, T5, T6, T7, T8, T9, T10, R> MetaFunction<R> of10(Functions.F10<T1, T2, T3, T4, T5, T6, T7, T8, T9, T10, R> fn) {
+        return new MetaFunction.Arity10<T1, T2, T3, T4, T5, T6, T7, T8, T9, T10, R>(fn);
+    }
+
+    //the primitive adapters return their boxed result as R, so generated code only calls them when R can hold it
+
+    public static <R> MetaFunction<R> ofInt1(Functions.IntF1 fn) {
+        return new MetaFunction.IntArity1<R>(fn);
+    }
+
+    public static <R> MetaFunction<R> ofInt2(Functions.IntF2 fn) {
+        return new MetaFunction.IntArity2<R>(fn);
+    }
+
+    public static <R> MetaFunction<R> ofInt3(Functions.IntF3 fn) {
+        return new MetaFunction.IntArity3<R>(fn);
+    }
+
+    public static <R> MetaFunction<R> ofLong1(Functions.LongF1 fn) {
+        return new MetaFunction.LongArity1<R>(fn);
+    }
+
+    public static <R> MetaFunction<R> ofLong2(Functions.LongF2 fn) {
+        return new MetaFunction.LongArity2<R>(fn);
+    }
+
+    public static <R> MetaFunction<R> ofLong3(Functions.LongF3 fn) {
+        return new MetaFunction.LongArity3<R>(fn);
+    }
+
+    public static <R> MetaFunction<R> ofDouble1(Functions.DoubleF1 fn) {
+        return new MetaFunction.DoubleArity1<R>(fn);
+    }
+
+    public static <R> MetaFunction<R> ofDouble2(Functions.DoubleF2 fn) {
+        return new MetaFunction.DoubleArity2<R>(fn);
+    }
+
+    public static <R> MetaFunction<R> ofDouble3(Functions.DoubleF3 fn) {
+        return new MetaFunction.DoubleArity3<R>(fn);
+    }
+
+    /** for {@code MetaMethod.Engine.METHOD_HANDLE}: calls {@code fn} through a MethodHandle bound to it */
+    public static <R> MetaFunction<R> handle(Functions.F<R> fn, int arity) {
+        return new MetaFunction.Handle<R>(fn, arity);
+    }
+
+    /** for the F11, F12... interfaces a generated class declares for itself */
+    public static <R> MetaFunction<R> wide(Functions.F<R> fn) {
+        return MetaFunction.adapt(fn);
+    }
+
+    //with @MetaMethod(reuse = true), the adapter made for a function instance before, if it is still around
+
+    public static <R> MetaFunction<R> reuse(Functions.F<R> fn, int arity) {
+        return MetaFunction.reuse(fn, OF[arity]);
+    }
+
+    public static <R> MetaFunction<R> reuseHandle(Functions.F<R> fn, int arity) {
+        return MetaFunction.reuse(fn, HANDLE[arity]);
+    }
+
+    public static <R> MetaFunction<R> reuseInt(Functions.F<?> fn, int arity) {
+        return MetaFunction.reuse(fn, INT[arity]);
+    }
+
+    public static <R> MetaFunction<R> reuseLong(Functions.F<?> fn, int arity) {
+        return MetaFunction.reuse(fn, LONG[arity]);
+    }
+
+    public static <R> MetaFunction<R> reuseDouble(Functions.F<?> fn, int arity) {
+        return MetaFunction.reuse(fn, DOUBLE[arity]);
+    }
+
+    public static <R> MetaFunction<R> reuseWide(Functions.F<R> fn) {
+        return MetaFunction.reuse(fn, WIDE);
+    }
+}
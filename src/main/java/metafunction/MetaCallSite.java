@@ -0,0 +1,315 @@
+package metafunction;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.invoke.MutableCallSite;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A call site for {@code function.apply(args)} that specializes itself for the functions it sees, for dispatchers
+ * which call hundreds of different handlers from one place. A plain {@code apply} call there goes megamorphic and
+ * the JIT stops inlining; a MetaCallSite instead goes through three tiers:
+ *
+ * <ol>
+ *     <li>profiling: it counts the arities and the classes of the user's functions it is called with.</li>
+ *     <li>specialized: after {@code threshold} calls, if it saw at most {@link #MAX_CASES} classes, its target
+ *     becomes a chain of exact class checks, hottest first, each calling that class's method directly. If it saw
+ *     more, but the hottest {@link #MAX_CASES} made at least {@link #HOT_SHARE} of the calls, it specializes for
+ *     those and sends the rest to {@code apply}.</li>
+ *     <li>megamorphic: otherwise it stops profiling and calls {@code apply} as usual.</li>
+ * </ol>
+ *
+ * A site specialized for every class it saw deoptimizes back to profiling when it's called with another one. After
+ * {@link #MAX_DEOPTIMIZATIONS} of those it gives up and stays megamorphic.
+ *
+ * Hundreds of handlers called about equally often have no hot few, so such a site goes megamorphic and only the
+ * handlers themselves are left for the JIT to optimize.
+ *
+ * The tiers swap the target of a {@link MutableCallSite}. For the JIT to inline through it, keep the
+ * {@link #invoker()} in a {@code static final} field and call it with {@code invokeExact}; {@link #apply} is the
+ * convenient, slower, way in.
+ */
+public final class MetaCallSite<R> {
+    public enum Tier {
+        PROFILING, SPECIALIZED, MEGAMORPHIC
+    }
+
+    public static final int DEFAULT_THRESHOLD = 10000;
+    /** the most classes a specialized site checks for */
+    public static final int MAX_CASES = 4;
+    /** the share of profiled calls the hottest classes must make for a site with more classes to specialize */
+    public static final double HOT_SHARE = 0.9;
+    public static final int MAX_DEOPTIMIZATIONS = 8;
+    //arities past 10 are counted together
+    static final int ARITIES = 12;
+
+    static final MethodType TYPE = MethodType.methodType(Object.class, MetaFunction.class, Object[].class);
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+    private static final MethodHandle APPLY;
+    private static final MethodHandle PROFILE;
+    private static final MethodHandle MISS;
+    private static final MethodHandle MATCHES;
+
+    static {
+        try {
+            APPLY = LOOKUP.findVirtual(MetaFunction.class, "apply", MethodType.methodType(Object.class, Object[].class));
+            PROFILE = LOOKUP.findVirtual(MetaCallSite.class, "profile", TYPE);
+            MISS = LOOKUP.findVirtual(MetaCallSite.class, "miss", TYPE);
+            MATCHES = LOOKUP.findStatic(MetaCallSite.class, "matches", MethodType.methodType(boolean.class,
+                    Class.class, Class.class, int.class, MetaFunction.class, Object[].class));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final int threshold;
+    private final MutableCallSite site = new MutableCallSite(TYPE);
+    private final MethodHandle invoker = site.dynamicInvoker();
+
+    private final AtomicLong calls = new AtomicLong();
+    private final AtomicLongArray arities = new AtomicLongArray(ARITIES);
+    private final ConcurrentMap<Receiver.Key, Receiver> receivers = new ConcurrentHashMap<>();
+    private final AtomicLong specializations = new AtomicLong();
+    private final AtomicLong deoptimizations = new AtomicLong();
+    private volatile Tier tier;
+
+    public MetaCallSite() {
+        this(DEFAULT_THRESHOLD);
+    }
+
+    public MetaCallSite(int threshold) {
+        if (threshold < 1) {
+            throw new IllegalArgumentException("threshold must be positive, was " + threshold);
+        }
+        this.threshold = threshold;
+        retarget(Tier.PROFILING, PROFILE.bindTo(this));
+    }
+
+    /**
+     * The handle to call, of type {@code (MetaFunction, Object[])Object}. It always calls this site's current target.
+     */
+    public MethodHandle invoker() {
+        return invoker;
+    }
+
+    @SuppressWarnings("unchecked")
+    public R apply(MetaFunction<? extends R> function, Object... args) {
+        try {
+            return (R) (Object) invoker.invokeExact((MetaFunction) function, args);
+        } catch (Throwable t) {
+            throw MetaFunction.Handle.rethrow(t);
+        }
+    }
+
+    public Tier tier() {
+        return tier;
+    }
+
+    /** calls profiled since the site last started profiling */
+    public long calls() {
+        return calls.get();
+    }
+
+    /** profiled calls by number of arguments, with every arity past 10 counted at index 11 */
+    public long[] arityCounts() {
+        long[] counts = new long[ARITIES];
+        for (int i = 0; i < ARITIES; i++) {
+            counts[i] = arities.get(i);
+        }
+        return counts;
+    }
+
+    /** profiled calls by the class of the user's function, or of the MetaFunction when it doesn't wrap one */
+    public Map<Class<?>, Long> receiverCounts() {
+        Map<Class<?>, Long> counts = Maps.newHashMap();
+        for (Receiver receiver : receivers.values()) {
+            Long calls = counts.get(receiver.target);
+            counts.put(receiver.target, (calls == null ? 0 : calls) + receiver.calls());
+        }
+        return Collections.unmodifiableMap(counts);
+    }
+
+    public long specializations() {
+        return specializations.get();
+    }
+
+    public long deoptimizations() {
+        return deoptimizations.get();
+    }
+
+    @Override public String toString() {
+        return "MetaCallSite[" + tier + ", " + calls() + " calls, " + receivers.size() + " receivers, "
+                + specializations() + " specializations, " + deoptimizations() + " deoptimizations]";
+    }
+
+    private Object profile(MetaFunction<?> function, Object[] args) {
+        int arity = Math.min(args.length, ARITIES - 1);
+        arities.incrementAndGet(arity);
+        //the same function class can come wrapped in different MetaFunctions, which each need a case of their own
+        Receiver.Key key = new Receiver.Key(function.getClass(), function.target().getClass());
+        Receiver receiver = receivers.get(key);
+        if (receiver == null) {
+            Receiver existing = receivers.putIfAbsent(key, receiver = new Receiver(key.wrapper, key.target, function.arity()));
+            receiver = existing != null ? existing : receiver;
+        }
+        receiver.arities.incrementAndGet(arity);
+        if (calls.incrementAndGet() == threshold) {
+            specialize();
+        }
+        return function.apply(args);
+    }
+
+    private Object miss(MetaFunction<?> function, Object[] args) {
+        synchronized (this) {
+            //calls already on their way through the old target may miss after another thread has retargeted
+            if (tier == Tier.SPECIALIZED) {
+                if (deoptimizations.incrementAndGet() > MAX_DEOPTIMIZATIONS) {
+                    retarget(Tier.MEGAMORPHIC, APPLY.asType(TYPE));
+                } else {
+                    resetProfile();
+                    retarget(Tier.PROFILING, PROFILE.bindTo(this));
+                }
+            }
+        }
+        return function.apply(args);
+    }
+
+    private synchronized void specialize() {
+        if (tier != Tier.PROFILING) {
+            return;
+        }
+        List<Receiver> hottestLast = Lists.newArrayList(receivers.values());
+        Collections.sort(hottestLast, (a, b) -> Long.compare(a.calls(), b.calls()));
+        MethodHandle chain = MISS.bindTo(this);
+        if (hottestLast.size() > MAX_CASES) {
+            List<Receiver> cold = hottestLast.subList(0, hottestLast.size() - MAX_CASES);
+            long coldCalls = 0;
+            for (Receiver receiver : cold) {
+                coldCalls += receiver.calls();
+            }
+            if (coldCalls > (1 - HOT_SHARE) * calls.get()) {
+                retarget(Tier.MEGAMORPHIC, APPLY.asType(TYPE));
+                return;
+            }
+            //the profile already saw a long tail, so calls outside the hot few aren't a reason to deoptimize
+            hottestLast = hottestLast.subList(hottestLast.size() - MAX_CASES, hottestLast.size());
+            chain = APPLY.asType(TYPE);
+        }
+        try {
+            for (Receiver receiver : hottestLast) {
+                Class<?> target = receiver.target;
+                Class<?> wrapper = receiver.wrapper;
+                int arity = target != wrapper && receiver.onlyArity() == receiver.arity ? receiver.arity : -1;
+                MethodHandle test = MethodHandles.insertArguments(MATCHES, 0, wrapper, target, arity);
+                chain = MethodHandles.guardWithTest(test, invoke(wrapper, target, arity), chain);
+            }
+        } catch (ReflectiveOperationException e) {
+            //a class we can't reach directly; calling apply as usual is always correct
+            retarget(Tier.MEGAMORPHIC, APPLY.asType(TYPE));
+            return;
+        }
+        specializations.incrementAndGet();
+        retarget(Tier.SPECIALIZED, chain);
+    }
+
+    /**
+     * A direct call for one receiver. For an ArityN invoker only seen with its own arity, that calls the user's
+     * function through the invoker's {@code fn} field, cast to its exact class so the JIT can inline it.
+     * Anything else calls {@code apply} with the MetaFunction cast to its exact class.
+     */
+    private static MethodHandle invoke(Class<?> wrapper, Class<?> target, int arity) throws ReflectiveOperationException {
+        if (arity < 0) {
+            return APPLY.asType(MethodType.methodType(Object.class, wrapper, Object[].class)).asType(TYPE);
+        }
+        Class<?> functionType = wrapper.getDeclaredField("fn").getType();
+        MethodHandle call = LOOKUP.findVirtual(functionType, "apply", MethodType.genericMethodType(arity));
+        call = call.asType(call.type().changeParameterType(0, target));
+        MethodHandle fn = LOOKUP.findGetter(wrapper, "fn", functionType)
+                .asType(MethodType.methodType(target, wrapper));
+        return MethodHandles.filterArguments(call, 0, fn)
+                .asSpreader(Object[].class, arity)
+                .asType(TYPE);
+    }
+
+    private static boolean matches(Class<?> wrapper, Class<?> target, int arity, MetaFunction<?> function, Object[] args) {
+        return function.getClass() == wrapper && function.target().getClass() == target
+                && (arity < 0 || args.length == arity);
+    }
+
+    private void resetProfile() {
+        calls.set(0);
+        receivers.clear();
+        for (int i = 0; i < ARITIES; i++) {
+            arities.set(i, 0);
+        }
+    }
+
+    private void retarget(Tier tier, MethodHandle target) {
+        this.tier = tier;
+        site.setTarget(target);
+        MutableCallSite.syncAll(new MutableCallSite[]{site});
+    }
+
+    static final class Receiver {
+        final Class<?> wrapper;
+        final Class<?> target;
+        final int arity;
+        final AtomicLongArray arities = new AtomicLongArray(ARITIES);
+
+        Receiver(Class<?> wrapper, Class<?> target, int arity) {
+            this.wrapper = wrapper;
+            this.target = target;
+            this.arity = arity;
+        }
+
+        long calls() {
+            long calls = 0;
+            for (int i = 0; i < ARITIES; i++) {
+                calls += arities.get(i);
+            }
+            return calls;
+        }
+
+        /** the one arity this receiver was called with, or -1 if there were several */
+        int onlyArity() {
+            int only = -1;
+            for (int i = 0; i < ARITIES; i++) {
+                if (arities.get(i) > 0) {
+                    if (only >= 0 || i == ARITIES - 1) {
+                        return -1;
+                    }
+                    only = i;
+                }
+            }
+            return only;
+        }
+
+        static final class Key {
+            final Class<?> wrapper;
+            final Class<?> target;
+
+            Key(Class<?> wrapper, Class<?> target) {
+                this.wrapper = wrapper;
+                this.target = target;
+            }
+
+            @Override public boolean equals(Object o) {
+                return o instanceof Key && ((Key) o).wrapper == wrapper && ((Key) o).target == target;
+            }
+
+            @Override public int hashCode() {
+                return 31 * wrapper.hashCode() + target.hashCode();
+            }
+        }
+    }
+}
@@ -1,20 +1,1393 @@
 package metafunction;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
 import java.util.functions.Block;
 import java.util.functions.Mapper;
+import java.util.functions.Predicate;
+
+public abstract class MetaFunction<T> {
+    static final int MIN_BATCH_SPLIT = 256;
+
+    MetaFunction() {
+    }
+
+    public abstract T apply(Object... args);
+
+    /** the number of arguments this function takes, or -1 if it accepts any number */
+    public int arity() {
+        return -1;
+    }
+
+    /** what MetaCallSite profiles and guards on: the user's function for the ArityN invokers, otherwise this */
+    Object target() {
+        return this;
+    }
+
+    //fixed-arity entry points, overridden by the ArityN invokers to skip the varargs array.
+    //anything else falls back to apply(Object...)
+    public T apply0() {
+        return apply();
+    }
+
+    public T apply1(Object a) {
+        return apply(a);
+    }
+
+    public T apply2(Object a, Object b) {
+        return apply(a, b);
+    }
+
+    public T apply3(Object a, Object b, Object c) {
+        return apply(a, b, c);
+    }
+
+    public T apply4(Object a, Object b, Object c, Object d) {
+        return apply(a, b, c, d);
+    }
+
+    public T apply5(Object a, Object b, Object c, Object d, Object e) {
+        return apply(a, b, c, d, e);
+    }
+
+    public T apply6(Object a, Object b, Object c, Object d, Object e, Object f) {
+        return apply(a, b, c, d, e, f);
+    }
+
+    public T apply7(Object a, Object b, Object c, Object d, Object e, Object f, Object g) {
+        return apply(a, b, c, d, e, f, g);
+    }
+
+    public T apply8(Object a, Object b, Object c, Object d, Object e, Object f, Object g, Object h) {
+        return apply(a, b, c, d, e, f, g, h);
+    }
+
+    public T apply9(Object a, Object b, Object c, Object d, Object e, Object f, Object g, Object h, Object i) {
+        return apply(a, b, c, d, e, f, g, h, i);
+    }
+
+    public T apply10(Object a, Object b, Object c, Object d, Object e, Object f, Object g, Object h, Object i, Object j) {
+        return apply(a, b, c, d, e, f, g, h, i, j);
+    }
+
+    /**
+     * Calls the fixed-arity entry point for the number of arguments in {@code frame}, or {@link #apply(Object...)}
+     * past 10. The frame is emptied before this function runs, so it can be refilled straight away, even by the
+     * function itself.
+     */
+    public T apply(ArgFrame frame) {
+        Object[] s = frame.slots;
+        switch (frame.size) {
+            case 0: {
+                frame.clear();
+                return apply0();
+            }
+            case 1: {
+                Object a = s[0];
+                frame.clear();
+                return apply1(a);
+            }
+            case 2: {
+                Object a = s[0], b = s[1];
+                frame.clear();
+                return apply2(a, b);
+            }
+            case 3: {
+                Object a = s[0], b = s[1], c = s[2];
+                frame.clear();
+                return apply3(a, b, c);
+            }
+            case 4: {
+                Object a = s[0], b = s[1], c = s[2], d = s[3];
+                frame.clear();
+                return apply4(a, b, c, d);
+            }
+            case 5: {
+                Object a = s[0], b = s[1], c = s[2], d = s[3], e = s[4];
+                frame.clear();
+                return apply5(a, b, c, d, e);
+            }
+            case 6: {
+                Object a = s[0], b = s[1], c = s[2], d = s[3], e = s[4], f = s[5];
+                frame.clear();
+                return apply6(a, b, c, d, e, f);
+            }
+            case 7: {
+                Object a = s[0], b = s[1], c = s[2], d = s[3], e = s[4], f = s[5], g = s[6];
+                frame.clear();
+                return apply7(a, b, c, d, e, f, g);
+            }
+            case 8: {
+                Object a = s[0], b = s[1], c = s[2], d = s[3], e = s[4], f = s[5], g = s[6], h = s[7];
+                frame.clear();
+                return apply8(a, b, c, d, e, f, g, h);
+            }
+            case 9: {
+                Object a = s[0], b = s[1], c = s[2], d = s[3], e = s[4], f = s[5], g = s[6], h = s[7], i = s[8];
+                frame.clear();
+                return apply9(a, b, c, d, e, f, g, h, i);
+            }
+            case 10: {
+                Object a = s[0], b = s[1], c = s[2], d = s[3], e = s[4], f = s[5], g = s[6], h = s[7], i = s[8], j = s[9];
+                frame.clear();
+                return apply10(a, b, c, d, e, f, g, h, i, j);
+            }
+            default: {
+                Object[] args = frame.toArray();
+                frame.clear();
+                return apply(args);
+            }
+        }
+    }
+
+    //unboxed entry points, overridden by the primitive invokers
+    public int applyAsInt(int a) {
+        return ((Number) apply1(a)).intValue();
+    }
+
+    public int applyAsInt(int a, int b) {
+        return ((Number) apply2(a, b)).intValue();
+    }
+
+    public int applyAsInt(int a, int b, int c) {
+        return ((Number) apply3(a, b, c)).intValue();
+    }
+
+    public long applyAsLong(long a) {
+        return ((Number) apply1(a)).longValue();
+    }
+
+    public long applyAsLong(long a, long b) {
+        return ((Number) apply2(a, b)).longValue();
+    }
+
+    public long applyAsLong(long a, long b, long c) {
+        return ((Number) apply3(a, b, c)).longValue();
+    }
+
+    public double applyAsDouble(double a) {
+        return ((Number) apply1(a)).doubleValue();
+    }
+
+    public double applyAsDouble(double a, double b) {
+        return ((Number) apply2(a, b)).doubleValue();
+    }
+
+    public double applyAsDouble(double a, double b, double c) {
+        return ((Number) apply3(a, b, c)).doubleValue();
+    }
+
+    /**
+     * Applies this function on {@code executor}, e.g. for handlers which block on I/O. The arguments are copied, so
+     * the caller may reuse its array once this returns.
+     */
+    public CompletableFuture<T> applyAsyncOn(Executor executor, Object... args) {
+        Object[] copy = args.clone();
+        return CompletableFuture.supplyAsync(() -> apply(copy), executor);
+    }
+
+    /**
+     * Applies this function on {@link #asyncExecutor()}.
+     */
+    public CompletableFuture<T> applyAsync(Object... args) {
+        return applyAsyncOn(asyncExecutor(), args);
+    }
+
+    /**
+     * The default executor for asynchronous calls: one virtual thread per task when the JVM supports them,
+     * otherwise a cached pool of daemon threads.
+     */
+    public static Executor asyncExecutor() {
+        return AsyncExecutor.INSTANCE;
+    }
+
+    static final class AsyncExecutor {
+        static final Executor INSTANCE = create();
+
+        private static Executor create() {
+            try {
+                return (Executor) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            } catch (ReflectiveOperationException e) {
+                return Executors.newCachedThreadPool(runnable -> {
+                    Thread thread = new Thread(runnable, "metafunction-async");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+            }
+        }
+    }
+
+    /**
+     * Applies this function to each row of arguments, in order.
+     */
+    @SuppressWarnings("unchecked")
+    public List<T> applyBatch(List<Object[]> rows) {
+        Object[][] rowArray = rows.toArray(new Object[rows.size()][]);
+        Object[] results = new Object[rowArray.length];
+        applyRows(rowArray, results, 0, results.length);
+        return (List<T>) Arrays.asList(results);
+    }
+
+    /**
+     * Like {@link #applyBatch(List)}, but splits the rows across the common fork-join pool.
+     */
+    @SuppressWarnings("unchecked")
+    public List<T> applyBatchParallel(List<Object[]> rows) {
+        Object[][] rowArray = rows.toArray(new Object[rows.size()][]);
+        Object[] results = new Object[rowArray.length];
+        ForkJoinPool.commonPool().invoke(new Batch(this, rowArray, null, results, 0, results.length));
+        return (List<T>) Arrays.asList(results);
+    }
 
-public class MetaFunction<T> {
-    private final Mapper<T, Object[]> applier;
+    /**
+     * Applies this function to columnar arguments: the i-th call takes {@code columns[0][i]},
+     * {@code columns[1][i]}..., and its result is stored in {@code results[i]}.
+     */
+    public void applyBatch(Object[][] columns, T[] results) {
+        checkColumns(columns, results);
+        applyColumns(columns, results, 0, results.length);
+    }
 
-    private MetaFunction(Mapper<T, Object[]> applier) {
-        this.applier = applier;
+    /**
+     * Like {@link #applyBatch(Object[][], Object[])}, but splits the calls across the common fork-join pool.
+     */
+    public void applyBatchParallel(Object[][] columns, T[] results) {
+        checkColumns(columns, results);
+        ForkJoinPool.commonPool().invoke(new Batch(this, null, columns, results, 0, results.length));
     }
 
-    public T apply(Object... args) {
-        return applier.map(args);
+    //batch loops, overridden by the ArityN invokers so the whole loop calls the user's function directly
+    void applyRows(Object[][] rows, Object[] results, int from, int to) {
+        for (int i = from; i < to; i++) {
+            results[i] = apply(rows[i]);
+        }
+    }
+
+    void applyColumns(Object[][] columns, Object[] results, int from, int to) {
+        //a frame goes through the fixed-arity entry points, so wrappers which override them don't need an array per row
+        ArgFrame frame = new ArgFrame(columns.length);
+        for (int i = from; i < to; i++) {
+            for (int c = 0; c < columns.length; c++) {
+                frame.add(columns[c][i]);
+            }
+            results[i] = apply(frame);
+        }
+    }
+
+    private void checkColumns(Object[][] columns, Object[] results) {
+        int arity = arity();
+        if (arity >= 0 && columns.length != arity) {
+            throw new IllegalArgumentException(columns.length + " columns for a function taking " + arity + " arguments");
+        }
+        for (Object[] column : columns) {
+            if (column.length < results.length) {
+                throw new IllegalArgumentException("column of " + column.length + " arguments for " + results.length + " results");
+            }
+        }
+    }
+
+    static final class Batch extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        final MetaFunction<?> function;
+        final Object[][] rows;
+        final Object[][] columns;
+        final Object[] results;
+        final int from;
+        final int to;
+
+        Batch(MetaFunction<?> function, Object[][] rows, Object[][] columns, Object[] results, int from, int to) {
+            this.function = function;
+            this.rows = rows;
+            this.columns = columns;
+            this.results = results;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override protected void compute() {
+            int threshold = Math.max(MIN_BATCH_SPLIT, results.length / (ForkJoinPool.getCommonPoolParallelism() * 4));
+            if (to - from <= threshold) {
+                if (rows != null) {
+                    function.applyRows(rows, results, from, to);
+                } else {
+                    function.applyColumns(columns, results, from, to);
+                }
+            } else {
+                int middle = (from + to) >>> 1;
+                invokeAll(new Batch(function, rows, columns, results, from, middle),
+                          new Batch(function, rows, columns, results, middle, to));
+            }
+        }
+    }
+
+    /**
+     * A reactive-streams Processor which applies this function to each tuple of arguments it receives, running up to
+     * {@code parallelism} batches of up to {@code batchSize} tuples at once on {@code executor}. Results are emitted in
+     * the order their arguments arrived if {@code ordered}, and as soon as they're ready otherwise.
+     */
+    public MetaFunctionProcessor<T> processor(Executor executor, int parallelism, int batchSize, boolean ordered) {
+        return new MetaFunctionProcessor<T>(this, executor, parallelism, batchSize, ordered);
+    }
+
+    //combinators all flatten into one PipelineMetaFunction, however many are chained
+
+    /**
+     * @return a function which passes this function's result through {@code after}.
+     */
+    public <V> MetaFunction<V> andThen(Mapper<V, ? super T> after) {
+        return PipelineMetaFunction.of(this).withMapper(after);
+    }
+
+    /**
+     * @return a function which calls {@code before} with its arguments and then this function with the result.
+     */
+    public MetaFunction<T> compose(MetaFunction<?> before) {
+        return PipelineMetaFunction.of(this).withStage(PipelineMetaFunction.COMPOSE, null, null, before);
+    }
+
+    /**
+     * @return a function which calls this function when {@code guard} accepts its arguments, and
+     *     {@code otherwise} when it doesn't.
+     */
+    public MetaFunction<T> filter(Predicate<Object[]> guard, MetaFunction<? extends T> otherwise) {
+        return PipelineMetaFunction.of(this).withStage(PipelineMetaFunction.GUARD, guard, null, otherwise);
+    }
+
+    /**
+     * @return a function which calls this function with {@code bound} followed by its own arguments.
+     */
+    public MetaFunction<T> partial(Object... bound) {
+        return PipelineMetaFunction.of(this).withStage(PipelineMetaFunction.BIND, null, bound.clone(), null);
+    }
+
+    /**
+     * Wraps a pure function so that repeated calls with equal arguments return a cached result, keeping at
+     * most {@code maximumSize} results.
+     */
+    public static <T> MemoizedMetaFunction<T> memoized(MetaFunction<T> function, long maximumSize) {
+        return new MemoizedMetaFunction<T>(function, maximumSize, 0, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Like {@link #memoized(MetaFunction, long)}, but also drops each result {@code expireAfterWrite} after
+     * it was computed.
+     */
+    public static <T> MemoizedMetaFunction<T> memoized(MetaFunction<T> function, long maximumSize,
+                                                       long expireAfterWrite, TimeUnit unit) {
+        return new MemoizedMetaFunction<T>(function, maximumSize, expireAfterWrite, unit);
     }
 
     public static <T> MetaFunction<T> of(Mapper<T, Object[]> applier) {
-        return new MetaFunction<T>(applier);
+        return new Mapped<T>(applier);
+    }
+
+    /**
+     * Returns the MetaFunction {@code factory} made for {@code fn} before, or makes one. Adapters are looked up
+     * by the identity of {@code fn}, separately for each factory, and are only held as long as something else
+     * references them.
+     */
+    @SuppressWarnings("unchecked")
+    public static <F extends Functions.F<?>, T> MetaFunction<T> reuse(F fn, Mapper<MetaFunction<T>, F> factory) {
+        Cache<Object, MetaFunction<?>> adapters = Reused.ADAPTERS.get(factory.getClass());
+        MetaFunction<T> adapter = (MetaFunction<T>) adapters.getIfPresent(fn);
+        if (adapter == null) {
+            //racing threads may each make an adapter; any of them will do
+            adapter = factory.map(fn);
+            adapters.put(fn, adapter);
+        }
+        return adapter;
+    }
+
+    static final class Reused extends ClassValue<Cache<Object, MetaFunction<?>>> {
+        static final Reused ADAPTERS = new Reused();
+
+        //weak keys compare by identity. the adapter references its function, so it must be weakly held too
+        @Override protected Cache<Object, MetaFunction<?>> computeValue(Class<?> factoryType) {
+            return CacheBuilder.newBuilder().weakKeys().weakValues().build();
+        }
+    }
+
+    /**
+     * Adapts a function that wasn't passed through a generated {@code @MetaMethod} overload, e.g. one loaded from a
+     * plugin. The adapter for each class of function is resolved once and then reused, so adapting and calling
+     * don't use reflection. A class implementing several {@link Functions} interfaces is adapted as the one with
+     * the fewest parameters, and as the primitive one of those with the same number of parameters.
+     */
+    @SuppressWarnings("unchecked")
+    public static <R> MetaFunction<R> adapt(Functions.F<R> fn) {
+        return (MetaFunction<R>) Adapters.INSTANCE.get(fn.getClass()).map(fn);
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    static final class Adapters extends ClassValue<Mapper<MetaFunction<?>, Functions.F<?>>> {
+        static final Adapters INSTANCE = new Adapters();
+
+        @Override protected Mapper<MetaFunction<?>, Functions.F<?>> computeValue(Class<?> type) {
+            //by parameter count, so a class implementing several interfaces is adapted as the narrowest; at the same
+            //count the primitive interfaces go first, since they don't box
+            if (Functions.F0.class.isAssignableFrom(type)) return fn -> new Arity0((Functions.F0) fn);
+            if (Functions.IntF1.class.isAssignableFrom(type)) return fn -> new IntArity1((Functions.IntF1) fn);
+            if (Functions.LongF1.class.isAssignableFrom(type)) return fn -> new LongArity1((Functions.LongF1) fn);
+            if (Functions.DoubleF1.class.isAssignableFrom(type)) return fn -> new DoubleArity1((Functions.DoubleF1) fn);
+            if (Functions.F1.class.isAssignableFrom(type)) return fn -> new Arity1((Functions.F1) fn);
+            if (Functions.IntF2.class.isAssignableFrom(type)) return fn -> new IntArity2((Functions.IntF2) fn);
+            if (Functions.LongF2.class.isAssignableFrom(type)) return fn -> new LongArity2((Functions.LongF2) fn);
+            if (Functions.DoubleF2.class.isAssignableFrom(type)) return fn -> new DoubleArity2((Functions.DoubleF2) fn);
+            if (Functions.F2.class.isAssignableFrom(type)) return fn -> new Arity2((Functions.F2) fn);
+            if (Functions.IntF3.class.isAssignableFrom(type)) return fn -> new IntArity3((Functions.IntF3) fn);
+            if (Functions.LongF3.class.isAssignableFrom(type)) return fn -> new LongArity3((Functions.LongF3) fn);
+            if (Functions.DoubleF3.class.isAssignableFrom(type)) return fn -> new DoubleArity3((Functions.DoubleF3) fn);
+            if (Functions.F3.class.isAssignableFrom(type)) return fn -> new Arity3((Functions.F3) fn);
+            if (Functions.F4.class.isAssignableFrom(type)) return fn -> new Arity4((Functions.F4) fn);
+            if (Functions.F5.class.isAssignableFrom(type)) return fn -> new Arity5((Functions.F5) fn);
+            if (Functions.F6.class.isAssignableFrom(type)) return fn -> new Arity6((Functions.F6) fn);
+            if (Functions.F7.class.isAssignableFrom(type)) return fn -> new Arity7((Functions.F7) fn);
+            if (Functions.F8.class.isAssignableFrom(type)) return fn -> new Arity8((Functions.F8) fn);
+            if (Functions.F9.class.isAssignableFrom(type)) return fn -> new Arity9((Functions.F9) fn);
+            if (Functions.F10.class.isAssignableFrom(type)) return fn -> new Arity10((Functions.F10) fn);
+            //wider interfaces, like the F11.. types nested in generated classes, go through a method handle
+            Method method = functionMethod(type);
+            if (method == null) {
+                throw new IllegalArgumentException(type + " does not implement a single-method Functions.F interface");
+            }
+            try {
+                method.setAccessible(true);
+                int arity = method.getParameterCount();
+                MethodHandle unbound = MethodHandles.lookup().unreflect(method)
+                        .asType(MethodType.genericMethodType(arity + 1));
+                return fn -> new Handle(unbound.bindTo(fn), arity);
+            } catch (IllegalAccessException | RuntimeException e) {
+                throw new IllegalArgumentException("cannot adapt " + type, e);
+            }
+        }
+
+        /** the apply method of the narrowest Functions interface type implements */
+        private static Method functionMethod(Class<?> type) {
+            Method narrowest = null;
+            for (Class<?> c = type; c != null; c = c.getSuperclass()) {
+                for (Class<?> iface : c.getInterfaces()) {
+                    if (iface != Functions.F.class && Functions.F.class.isAssignableFrom(iface)) {
+                        for (Method method : iface.getMethods()) {
+                            if (Modifier.isAbstract(method.getModifiers()) && method.getName().equals("apply")
+                                    && (narrowest == null || method.getParameterCount() < narrowest.getParameterCount())) {
+                                narrowest = method;
+                            }
+                        }
+                    }
+                }
+            }
+            return narrowest;
+        }
+    }
+
+    static final class Mapped<T> extends MetaFunction<T> {
+        private final Mapper<T, Object[]> applier;
+
+        Mapped(Mapper<T, Object[]> applier) {
+            this.applier = applier;
+        }
+
+        @Override public T apply(Object... args) {
+            return applier.map(args);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public static final class Arity0<R> extends MetaFunction<R> {
+        final Functions.F0<R> fn;
+
+        public Arity0(Functions.F0<R> fn) {
+            this.fn = fn;
+        }
+
+        @Override public int arity() {
+            return 0;
+        }
+
+        @Override Object target() {
+            return fn;
+        }
+
+        @Override public R apply0() {
+            return fn.apply();
+        }
+
+        @Override public R apply(Object... args) {
+            return fn.apply();
+        }
+
+        @Override void applyRows(Object[][] rows, Object[] results, int from, int to) {
+            for (int i = from; i < to; i++) {
+                results[i] = fn.apply();
+            }
+        }
+
+        @Override void applyColumns(Object[][] columns, Object[] results, int from, int to) {
+            for (int i = from; i < to; i++) {
+                results[i] = fn.apply();
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public static final class Arity1<T1, R> extends MetaFunction<R> {
+        final Functions.F1<T1, R> fn;
+
+        public Arity1(Functions.F1<T1, R> fn) {
+            this.fn = fn;
+        }
+
+        @Override public int arity() {
+            return 1;
+        }
+
+        @Override Object target() {
+            return fn;
+        }
+
+        @Override public R apply1(Object a) {
+            return fn.apply((T1) a);
+        }
+
+        @Override public R apply(Object... args) {
+            return fn.apply((T1) args[0]);
+        }
+
+        @Override void applyRows(Object[][] rows, Object[] results, int from, int to) {
+            for (int i = from; i < to; i++) {
+                Object[] row = rows[i];
+                results[i] = fn.apply((T1) row[0]);
+            }
+        }
+
+        @Override void applyColumns(Object[][] columns, Object[] results, int from, int to) {
+            Object[] c0 = columns[0];
+            for (int i = from; i < to; i++) {
+                results[i] = fn.apply((T1) c0[i]);
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public static final class Arity2<T1, T2, R> extends MetaFunction<R> {
+        final Functions.F2<T1, T2, R> fn;
+
+        public Arity2(Functions.F2<T1, T2, R> fn) {
+            this.fn = fn;
+        }
+
+        @Override public int arity() {
+            return 2;
+        }
+
+        @Override Object target() {
+            return fn;
+        }
+
+        @Override public R apply2(Object a, Object b) {
+            return fn.apply((T1) a, (T2) b);
+        }
+
+        @Override public R apply(Object... args) {
+            return fn.apply((T1) args[0], (T2) args[1]);
+        }
+
+        @Override void applyRows(Object[][] rows, Object[] results, int from, int to) {
+            for (int i = from; i < to; i++) {
+                Object[] row = rows[i];
+                results[i] = fn.apply((T1) row[0], (T2) row[1]);
+            }
+        }
+
+        @Override void applyColumns(Object[][] columns, Object[] results, int from, int to) {
+            Object[] c0 = columns[0];
+            Object[] c1 = columns[1];
+            for (int i = from; i < to; i++) {
+                results[i] = fn.apply((T1) c0[i], (T2) c1[i]);
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public static final class Arity3<T1, T2, T3, R> extends MetaFunction<R> {
+        final Functions.F3<T1, T2, T3, R> fn;
+
+        public Arity3(Functions.F3<T1, T2, T3, R> fn) {
+            this.fn = fn;
+        }
+
+        @Override public int arity() {
+            return 3;
+        }
+
+        @Override Object target() {
+            return fn;
+        }
+
+        @Override public R apply3(Object a, Object b, Object c) {
+            return fn.apply((T1) a, (T2) b, (T3) c);
+        }
+
+        @Override public R apply(Object... args) {
+            return fn.apply((T1) args[0], (T2) args[1], (T3) args[2]);
+        }
+
+        @Override void applyRows(Object[][] rows, Object[] results, int from, int to) {
+            for (int i = from; i < to; i++) {
+                Object[] row = rows[i];
+                results[i] = fn.apply((T1) row[0], (T2) row[1], (T3) row[2]);
+            }
+        }
+
+        @Override void applyColumns(Object[][] columns, Object[] results, int from, int to) {
+            Object[] c0 = columns[0];
+            Object[] c1 = columns[1];
+            Object[] c2 = columns[2];
+            for (int i = from; i < to; i++) {
+                results[i] = fn.apply((T1) c0[i], (T2) c1[i], (T3) c2[i]);
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public static final class Arity4<T1, T2, T3, T4, R> extends MetaFunction<R> {
+        final Functions.F4<T1, T2, T3, T4, R> fn;
+
+        public Arity4(Functions.F4<T1, T2, T3, T4, R> fn) {
+            this.fn = fn;
+        }
+
+        @Override public int arity() {
+            return 4;
+        }
+
+        @Override Object target() {
+            return fn;
+        }
+
+        @Override public R apply4(Object a, Object b, Object c, Object d) {
+            return fn.apply((T1) a, (T2) b, (T3) c, (T4) d);
+        }
+
+        @Override public R apply(Object... args) {
+            return fn.apply((T1) args[0], (T2) args[1], (T3) args[2], (T4) args[3]);
+        }
+
+        @Override void applyRows(Object[][] rows, Object[] results, int from, int to) {
+            for (int i = from; i < to; i++) {
+                Object[] row = rows[i];
+                results[i] = fn.apply((T1) row[0], (T2) row[1], (T3) row[2], (T4) row[3]);
+            }
+        }
+
+        @Override void applyColumns(Object[][] columns, Object[] results, int from, int to) {
+            Object[] c0 = columns[0];
+            Object[] c1 = columns[1];
+            Object[] c2 = columns[2];
+            Object[] c3 = columns[3];
+            for (int i = from; i < to; i++) {
+                results[i] = fn.apply((T1) c0[i], (T2) c1[i], (T3) c2[i], (T4) c3[i]);
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public static final class Arity5<T1, T2, T3, T4, T5, R> extends MetaFunction<R> {
+        final Functions.F5<T1, T2, T3, T4, T5, R> fn;
+
+        public Arity5(Functions.F5<T1, T2, T3, T4, T5, R> fn) {
+            this.fn = fn;
+        }
+
+        @Override public int arity() {
+            return 5;
+        }
+
+        @Override Object target() {
+            return fn;
+        }
+
+        @Override public R apply5(Object a, Object b, Object c, Object d, Object e) {
+            return fn.apply((T1) a, (T2) b, (T3) c, (T4) d, (T5) e);
+        }
+
+        @Override public R apply(Object... args) {
+            return fn.apply((T1) args[0], (T2) args[1], (T3) args[2], (T4) args[3], (T5) args[4]);
+        }
+
+        @Override void applyRows(Object[][] rows, Object[] results, int from, int to) {
+            for (int i = from; i < to; i++) {
+                Object[] row = rows[i];
+                results[i] = fn.apply((T1) row[0], (T2) row[1], (T3) row[2], (T4) row[3], (T5) row[4]);
+            }
+        }
+
+        @Override void applyColumns(Object[][] columns, Object[] results, int from, int to) {
+            Object[] c0 = columns[0];
+            Object[] c1 = columns[1];
+            Object[] c2 = columns[2];
+            Object[] c3 = columns[3];
+            Object[] c4 = columns[4];
+            for (int i = from; i < to; i++) {
+                results[i] = fn.apply((T1) c0[i], (T2) c1[i], (T3) c2[i], (T4) c3[i], (T5) c4[i]);
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public static final class Arity6<T1, T2, T3, T4, T5, T6, R> extends MetaFunction<R> {
+        final Functions.F6<T1, T2, T3, T4, T5, T6, R> fn;
+
+        public Arity6(Functions.F6<T1, T2, T3, T4, T5, T6, R> fn) {
+            this.fn = fn;
+        }
+
+        @Override public int arity() {
+            return 6;
+        }
+
+        @Override Object target() {
+            return fn;
+        }
+
+        @Override public R apply6(Object a, Object b, Object c, Object d, Object e, Object f) {
+            return fn.apply((T1) a, (T2) b, (T3) c, (T4) d, (T5) e, (T6) f);
+        }
+
+        @Override public R apply(Object... args) {
+            return fn.apply((T1) args[0], (T2) args[1], (T3) args[2], (T4) args[3], (T5) args[4], (T6) args[5]);
+        }
+
+        @Override void applyRows(Object[][] rows, Object[] results, int from, int to) {
+            for (int i = from; i < to; i++) {
+                Object[] row = rows[i];
+                results[i] = fn.apply((T1) row[0], (T2) row[1], (T3) row[2], (T4) row[3], (T5) row[4], (T6) row[5]);
+            }
+        }
+
+        @Override void applyColumns(Object[][] columns, Object[] results, int from, int to) {
+            Object[] c0 = columns[0];
+            Object[] c1 = columns[1];
+            Object[] c2 = columns[2];
+            Object[] c3 = columns[3];
+            Object[] c4 = columns[4];
+            Object[] c5 = columns[5];
+            for (int i = from; i < to; i++) {
+                results[i] = fn.apply((T1) c0[i], (T2) c1[i], (T3) c2[i], (T4) c3[i], (T5) c4[i], (T6) c5[i]);
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public static final class Arity7<T1, T2, T3, T4, T5, T6, T7, R> extends MetaFunction<R> {
+        final Functions.F7<T1, T2, T3, T4, T5, T6, T7, R> fn;
+
+        public Arity7(Functions.F7<T1, T2, T3, T4, T5, T6, T7, R> fn) {
+            this.fn = fn;
+        }
+
+        @Override public int arity() {
+            return 7;
+        }
+
+        @Override Object target() {
+            return fn;
+        }
+
+        @Override public R apply7(Object a, Object b, Object c, Object d, Object e, Object f, Object g) {
+            return fn.apply((T1) a, (T2) b, (T3) c, (T4) d, (T5) e, (T6) f, (T7) g);
+        }
+
+        @Override public R apply(Object... args) {
+            return fn.apply((T1) args[0], (T2) args[1], (T3) args[2], (T4) args[3], (T5) args[4], (T6) args[5], (T7) args[6]);
+        }
+
+        @Override void applyRows(Object[][] rows, Object[] results, int from, int to) {
+            for (int i = from; i < to; i++) {
+                Object[] row = rows[i];
+                results[i] = fn.apply((T1) row[0], (T2) row[1], (T3) row[2], (T4) row[3], (T5) row[4], (T6) row[5], (T7) row[6]);
+            }
+        }
+
+        @Override void applyColumns(Object[][] columns, Object[] results, int from, int to) {
+            Object[] c0 = columns[0];
+            Object[] c1 = columns[1];
+            Object[] c2 = columns[2];
+            Object[] c3 = columns[3];
+            Object[] c4 = columns[4];
+            Object[] c5 = columns[5];
+            Object[] c6 = columns[6];
+            for (int i = from; i < to; i++) {
+                results[i] = fn.apply((T1) c0[i], (T2) c1[i], (T3) c2[i], (T4) c3[i], (T5) c4[i], (T6) c5[i], (T7) c6[i]);
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public static final class Arity8<T1, T2, T3, T4, T5, T6, T7, T8, R> extends MetaFunction<R> {
+        final Functions.F8<T1, T2, T3, T4, T5, T6, T7, T8, R> fn;
+
+        public Arity8(Functions.F8<T1, T2, T3, T4, T5, T6, T7, T8, R> fn) {
+            this.fn = fn;
+        }
+
+        @Override public int arity() {
+            return 8;
+        }
+
+        @Override Object target() {
+            return fn;
+        }
+
+        @Override public R apply8(Object a, Object b, Object c, Object d, Object e, Object f, Object g, Object h) {
+            return fn.apply((T1) a, (T2) b, (T3) c, (T4) d, (T5) e, (T6) f, (T7) g, (T8) h);
+        }
+
+        @Override public R apply(Object... args) {
+            return fn.apply((T1) args[0], (T2) args[1], (T3) args[2], (T4) args[3], (T5) args[4], (T6) args[5], (T7) args[6], (T8) args[7]);
+        }
+
+        @Override void applyRows(Object[][] rows, Object[] results, int from, int to) {
+            for (int i = from; i < to; i++) {
+                Object[] row = rows[i];
+                results[i] = fn.apply((T1) row[0], (T2) row[1], (T3) row[2], (T4) row[3], (T5) row[4], (T6) row[5], (T7) row[6], (T8) row[7]);
+            }
+        }
+
+        @Override void applyColumns(Object[][] columns, Object[] results, int from, int to) {
+            Object[] c0 = columns[0];
+            Object[] c1 = columns[1];
+            Object[] c2 = columns[2];
+            Object[] c3 = columns[3];
+            Object[] c4 = columns[4];
+            Object[] c5 = columns[5];
+            Object[] c6 = columns[6];
+            Object[] c7 = columns[7];
+            for (int i = from; i < to; i++) {
+                results[i] = fn.apply((T1) c0[i], (T2) c1[i], (T3) c2[i], (T4) c3[i], (T5) c4[i], (T6) c5[i], (T7) c6[i], (T8) c7[i]);
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public static final class Arity9<T1, T2, T3, T4, T5, T6, T7, T8, T9, R> extends MetaFunction<R> {
+        final Functions.F9<T1, T2, T3, T4, T5, T6, T7, T8, T9, R> fn;
+
+        public Arity9(Functions.F9<T1, T2, T3, T4, T5, T6, T7, T8, T9, R> fn) {
+            this.fn = fn;
+        }
+
+        @Override public int arity() {
+            return 9;
+        }
+
+        @Override Object target() {
+            return fn;
+        }
+
+        @Override public R apply9(Object a, Object b, Object c, Object d, Object e, Object f, Object g, Object h, Object i) {
+            return fn.apply((T1) a, (T2) b, (T3) c, (T4) d, (T5) e, (T6) f, (T7) g, (T8) h, (T9) i);
+        }
+
+        @Override public R apply(Object... args) {
+            return fn.apply((T1) args[0], (T2) args[1], (T3) args[2], (T4) args[3], (T5) args[4], (T6) args[5], (T7) args[6], (T8) args[7], (T9) args[8]);
+        }
+
+        @Override void applyRows(Object[][] rows, Object[] results, int from, int to) {
+            for (int i = from; i < to; i++) {
+                Object[] row = rows[i];
+                results[i] = fn.apply((T1) row[0], (T2) row[1], (T3) row[2], (T4) row[3], (T5) row[4], (T6) row[5], (T7) row[6], (T8) row[7], (T9) row[8]);
+            }
+        }
+
+        @Override void applyColumns(Object[][] columns, Object[] results, int from, int to) {
+            Object[] c0 = columns[0];
+            Object[] c1 = columns[1];
+            Object[] c2 = columns[2];
+            Object[] c3 = columns[3];
+            Object[] c4 = columns[4];
+            Object[] c5 = columns[5];
+            Object[] c6 = columns[6];
+            Object[] c7 = columns[7];
+            Object[] c8 = columns[8];
+            for (int i = from; i < to; i++) {
+                results[i] = fn.apply((T1) c0[i], (T2) c1[i], (T3) c2[i], (T4) c3[i], (T5) c4[i], (T6) c5[i], (T7) c6[i], (T8) c7[i], (T9) c8[i]);
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public static final class Arity10<T1, T2, T3, T4, T5, T6, T7, T8, T9, T10, R> extends MetaFunction<R> {
+        final Functions.F10<T1, T2, T3, T4, T5, T6, T7, T8, T9, T10, R> fn;
+
+        public Arity10(Functions.F10<T1, T2, T3, T4, T5, T6, T7, T8, T9, T10, R> fn) {
+            this.fn = fn;
+        }
+
+        @Override public int arity() {
+            return 10;
+        }
+
+        @Override Object target() {
+            return fn;
+        }
+
+        @Override public R apply10(Object a, Object b, Object c, Object d, Object e, Object f, Object g, Object h, Object i, Object j) {
+            return fn.apply((T1) a, (T2) b, (T3) c, (T4) d, (T5) e, (T6) f, (T7) g, (T8) h, (T9) i, (T10) j);
+        }
+
+        @Override public R apply(Object... args) {
+            return fn.apply((T1) args[0], (T2) args[1], (T3) args[2], (T4) args[3], (T5) args[4], (T6) args[5], (T7) args[6], (T8) args[7], (T9) args[8], (T10) args[9]);
+        }
+
+        @Override void applyRows(Object[][] rows, Object[] results, int from, int to) {
+            for (int i = from; i < to; i++) {
+                Object[] row = rows[i];
+                results[i] = fn.apply((T1) row[0], (T2) row[1], (T3) row[2], (T4) row[3], (T5) row[4], (T6) row[5], (T7) row[6], (T8) row[7], (T9) row[8], (T10) row[9]);
+            }
+        }
+
+        @Override void applyColumns(Object[][] columns, Object[] results, int from, int to) {
+            Object[] c0 = columns[0];
+            Object[] c1 = columns[1];
+            Object[] c2 = columns[2];
+            Object[] c3 = columns[3];
+            Object[] c4 = columns[4];
+            Object[] c5 = columns[5];
+            Object[] c6 = columns[6];
+            Object[] c7 = columns[7];
+            Object[] c8 = columns[8];
+            Object[] c9 = columns[9];
+            for (int i = from; i < to; i++) {
+                results[i] = fn.apply((T1) c0[i], (T2) c1[i], (T3) c2[i], (T4) c3[i], (T5) c4[i], (T6) c5[i], (T7) c6[i], (T8) c7[i], (T9) c8[i], (T10) c9[i]);
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public static final class IntArity1<R> extends MetaFunction<R> {
+        final Functions.IntF1 fn;
+
+        public IntArity1(Functions.IntF1 fn) {
+            this.fn = fn;
+        }
+
+        @Override public int arity() {
+            return 1;
+        }
+
+        @Override public int applyAsInt(int a) {
+            return fn.apply(a);
+        }
+
+        @Override public R apply1(Object a) {
+            return (R) (Integer) fn.apply((Integer) a);
+        }
+
+        @Override public R apply(Object... args) {
+            return (R) (Integer) fn.apply((Integer) args[0]);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public static final class IntArity2<R> extends MetaFunction<R> {
+        final Functions.IntF2 fn;
+
+        public IntArity2(Functions.IntF2 fn) {
+            this.fn = fn;
+        }
+
+        @Override public int arity() {
+            return 2;
+        }
+
+        @Override public int applyAsInt(int a, int b) {
+            return fn.apply(a, b);
+        }
+
+        @Override public R apply2(Object a, Object b) {
+            return (R) (Integer) fn.apply((Integer) a, (Integer) b);
+        }
+
+        @Override public R apply(Object... args) {
+            return (R) (Integer) fn.apply((Integer) args[0], (Integer) args[1]);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public static final class IntArity3<R> extends MetaFunction<R> {
+        final Functions.IntF3 fn;
+
+        public IntArity3(Functions.IntF3 fn) {
+            this.fn = fn;
+        }
+
+        @Override public int arity() {
+            return 3;
+        }
+
+        @Override public int applyAsInt(int a, int b, int c) {
+            return fn.apply(a, b, c);
+        }
+
+        @Override public R apply3(Object a, Object b, Object c) {
+            return (R) (Integer) fn.apply((Integer) a, (Integer) b, (Integer) c);
+        }
+
+        @Override public R apply(Object... args) {
+            return (R) (Integer) fn.apply((Integer) args[0], (Integer) args[1], (Integer) args[2]);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public static final class LongArity1<R> extends MetaFunction<R> {
+        final Functions.LongF1 fn;
+
+        public LongArity1(Functions.LongF1 fn) {
+            this.fn = fn;
+        }
+
+        @Override public int arity() {
+            return 1;
+        }
+
+        @Override public long applyAsLong(long a) {
+            return fn.apply(a);
+        }
+
+        @Override public R apply1(Object a) {
+            return (R) (Long) fn.apply((Long) a);
+        }
+
+        @Override public R apply(Object... args) {
+            return (R) (Long) fn.apply((Long) args[0]);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public static final class LongArity2<R> extends MetaFunction<R> {
+        final Functions.LongF2 fn;
+
+        public LongArity2(Functions.LongF2 fn) {
+            this.fn = fn;
+        }
+
+        @Override public int arity() {
+            return 2;
+        }
+
+        @Override public long applyAsLong(long a, long b) {
+            return fn.apply(a, b);
+        }
+
+        @Override public R apply2(Object a, Object b) {
+            return (R) (Long) fn.apply((Long) a, (Long) b);
+        }
+
+        @Override public R apply(Object... args) {
+            return (R) (Long) fn.apply((Long) args[0], (Long) args[1]);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public static final class LongArity3<R> extends MetaFunction<R> {
+        final Functions.LongF3 fn;
+
+        public LongArity3(Functions.LongF3 fn) {
+            this.fn = fn;
+        }
+
+        @Override public int arity() {
+            return 3;
+        }
+
+        @Override public long applyAsLong(long a, long b, long c) {
+            return fn.apply(a, b, c);
+        }
+
+        @Override public R apply3(Object a, Object b, Object c) {
+            return (R) (Long) fn.apply((Long) a, (Long) b, (Long) c);
+        }
+
+        @Override public R apply(Object... args) {
+            return (R) (Long) fn.apply((Long) args[0], (Long) args[1], (Long) args[2]);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public static final class DoubleArity1<R> extends MetaFunction<R> {
+        final Functions.DoubleF1 fn;
+
+        public DoubleArity1(Functions.DoubleF1 fn) {
+            this.fn = fn;
+        }
+
+        @Override public int arity() {
+            return 1;
+        }
+
+        @Override public double applyAsDouble(double a) {
+            return fn.apply(a);
+        }
+
+        @Override public R apply1(Object a) {
+            return (R) (Double) fn.apply((Double) a);
+        }
+
+        @Override public R apply(Object... args) {
+            return (R) (Double) fn.apply((Double) args[0]);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public static final class DoubleArity2<R> extends MetaFunction<R> {
+        final Functions.DoubleF2 fn;
+
+        public DoubleArity2(Functions.DoubleF2 fn) {
+            this.fn = fn;
+        }
+
+        @Override public int arity() {
+            return 2;
+        }
+
+        @Override public double applyAsDouble(double a, double b) {
+            return fn.apply(a, b);
+        }
+
+        @Override public R apply2(Object a, Object b) {
+            return (R) (Double) fn.apply((Double) a, (Double) b);
+        }
+
+        @Override public R apply(Object... args) {
+            return (R) (Double) fn.apply((Double) args[0], (Double) args[1]);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public static final class DoubleArity3<R> extends MetaFunction<R> {
+        final Functions.DoubleF3 fn;
+
+        public DoubleArity3(Functions.DoubleF3 fn) {
+            this.fn = fn;
+        }
+
+        @Override public int arity() {
+            return 3;
+        }
+
+        @Override public double applyAsDouble(double a, double b, double c) {
+            return fn.apply(a, b, c);
+        }
+
+        @Override public R apply3(Object a, Object b, Object c) {
+            return (R) (Double) fn.apply((Double) a, (Double) b, (Double) c);
+        }
+
+        @Override public R apply(Object... args) {
+            return (R) (Double) fn.apply((Double) args[0], (Double) args[1], (Double) args[2]);
+        }
+    }
+
+    /**
+     * Invokes the user's function through a MethodHandle bound to it once, at construction. The handle's
+     * type is checked against the arity up front, so a call is a single invokeExact.
+     *
+     * The handles are held in instance fields, which HotSpot doesn't treat as constants, so the JIT can't inline
+     * through them the way it would through a {@code static final} handle.
+     */
+    @SuppressWarnings("unchecked")
+    public static final class Handle<R> extends MetaFunction<R> {
+        private static final Class<?>[] FUNCTION_TYPES = {Functions.F0.class, Functions.F1.class, Functions.F2.class, Functions.F3.class, Functions.F4.class, Functions.F5.class, Functions.F6.class, Functions.F7.class, Functions.F8.class, Functions.F9.class, Functions.F10.class};
+
+        private final int arity;
+        private final MethodHandle direct;
+        private final MethodHandle spread;
+
+        public Handle(Functions.F<R> fn, int arity) {
+            this(bind(fn, arity), arity);
+        }
+
+        //direct must be of the generic method type for its arity
+        Handle(MethodHandle direct, int arity) {
+            this.arity = arity;
+            this.direct = direct;
+            this.spread = direct.asSpreader(Object[].class, arity);
+        }
+
+        private static MethodHandle bind(Functions.F<?> fn, int arity) {
+            try {
+                return MethodHandles.publicLookup()
+                        .findVirtual(FUNCTION_TYPES[arity], "apply", MethodType.genericMethodType(arity))
+                        .bindTo(fn);
+            } catch (NoSuchMethodException | IllegalAccessException e) {
+                throw new IllegalArgumentException(e);
+            }
+        }
+
+        @Override public int arity() {
+            return arity;
+        }
+
+        @Override public R apply(Object... args) {
+            if (args.length != arity) {
+                //behave like the ArityN invokers, which ignore extra arguments and fail on missing ones
+                if (args.length < arity) {
+                    throw new ArrayIndexOutOfBoundsException(args.length);
+                }
+                args = Arrays.copyOf(args, arity);
+            }
+            try {
+                return (R) (Object) spread.invokeExact(args);
+            } catch (Throwable t) {
+                throw rethrow(t);
+            }
+        }
+
+        @Override public R apply0() {
+            if (arity != 0) {
+                return super.apply0();
+            }
+            try {
+                return (R) (Object) direct.invokeExact();
+            } catch (Throwable t) {
+                throw rethrow(t);
+            }
+        }
+
+        @Override public R apply1(Object a) {
+            if (arity != 1) {
+                return super.apply1(a);
+            }
+            try {
+                return (R) (Object) direct.invokeExact(a);
+            } catch (Throwable t) {
+                throw rethrow(t);
+            }
+        }
+
+        @Override public R apply2(Object a, Object b) {
+            if (arity != 2) {
+                return super.apply2(a, b);
+            }
+            try {
+                return (R) (Object) direct.invokeExact(a, b);
+            } catch (Throwable t) {
+                throw rethrow(t);
+            }
+        }
+
+        @Override public R apply3(Object a, Object b, Object c) {
+            if (arity != 3) {
+                return super.apply3(a, b, c);
+            }
+            try {
+                return (R) (Object) direct.invokeExact(a, b, c);
+            } catch (Throwable t) {
+                throw rethrow(t);
+            }
+        }
+
+        @Override public R apply4(Object a, Object b, Object c, Object d) {
+            if (arity != 4) {
+                return super.apply4(a, b, c, d);
+            }
+            try {
+                return (R) (Object) direct.invokeExact(a, b, c, d);
+            } catch (Throwable t) {
+                throw rethrow(t);
+            }
+        }
+
+        @Override public R apply5(Object a, Object b, Object c, Object d, Object e) {
+            if (arity != 5) {
+                return super.apply5(a, b, c, d, e);
+            }
+            try {
+                return (R) (Object) direct.invokeExact(a, b, c, d, e);
+            } catch (Throwable t) {
+                throw rethrow(t);
+            }
+        }
+
+        @Override public R apply6(Object a, Object b, Object c, Object d, Object e, Object f) {
+            if (arity != 6) {
+                return super.apply6(a, b, c, d, e, f);
+            }
+            try {
+                return (R) (Object) direct.invokeExact(a, b, c, d, e, f);
+            } catch (Throwable t) {
+                throw rethrow(t);
+            }
+        }
+
+        @Override public R apply7(Object a, Object b, Object c, Object d, Object e, Object f, Object g) {
+            if (arity != 7) {
+                return super.apply7(a, b, c, d, e, f, g);
+            }
+            try {
+                return (R) (Object) direct.invokeExact(a, b, c, d, e, f, g);
+            } catch (Throwable t) {
+                throw rethrow(t);
+            }
+        }
+
+        @Override public R apply8(Object a, Object b, Object c, Object d, Object e, Object f, Object g, Object h) {
+            if (arity != 8) {
+                return super.apply8(a, b, c, d, e, f, g, h);
+            }
+            try {
+                return (R) (Object) direct.invokeExact(a, b, c, d, e, f, g, h);
+            } catch (Throwable t) {
+                throw rethrow(t);
+            }
+        }
+
+        @Override public R apply9(Object a, Object b, Object c, Object d, Object e, Object f, Object g, Object h, Object i) {
+            if (arity != 9) {
+                return super.apply9(a, b, c, d, e, f, g, h, i);
+            }
+            try {
+                return (R) (Object) direct.invokeExact(a, b, c, d, e, f, g, h, i);
+            } catch (Throwable t) {
+                throw rethrow(t);
+            }
+        }
+
+        @Override public R apply10(Object a, Object b, Object c, Object d, Object e, Object f, Object g, Object h, Object i, Object j) {
+            if (arity != 10) {
+                return super.apply10(a, b, c, d, e, f, g, h, i, j);
+            }
+            try {
+                return (R) (Object) direct.invokeExact(a, b, c, d, e, f, g, h, i, j);
+            } catch (Throwable t) {
+                throw rethrow(t);
+            }
+        }
+
+        static RuntimeException rethrow(Throwable t) {
+            if (t instanceof Error) {
+                throw (Error) t;
+            }
+            if (t instanceof RuntimeException) {
+                return (RuntimeException) t;
+            }
+            return new RuntimeException(t);
+        }
     }
 }
@@ -0,0 +1,260 @@
+package metafunction;
+
+import com.google.common.collect.Lists;
+import org.reactivestreams.Processor;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Applies a MetaFunction to a stream of argument tuples. See {@link MetaFunction#processor}.
+ *
+ * Tuples are gathered into batches of up to {@code batchSize}, and up to {@code parallelism} batches run on the
+ * executor at once. At most {@code parallelism * batchSize} tuples are requested from upstream ahead of what has
+ * been emitted, so a slow subscriber slows down the publisher instead of filling a buffer. Results are emitted
+ * in the order their arguments arrived, or as soon as their batch finishes if the processor is unordered.
+ *
+ * Every signal funnels into {@link #drain()}, which only one thread runs at a time, so all the bookkeeping
+ * below the queues is confined to whichever thread is draining.
+ */
+public final class MetaFunctionProcessor<R> implements Processor<Object[], R> {
+    private final MetaFunction<R> function;
+    private final Executor executor;
+    private final int parallelism;
+    private final int batchSize;
+    private final boolean ordered;
+
+    private final AtomicInteger wip = new AtomicInteger();
+    private final Queue<Object[]> inbox = new ConcurrentLinkedQueue<>();
+    private final AtomicLong demand = new AtomicLong();
+    private final AtomicReference<Subscriber<? super R>> subscriber = new AtomicReference<>();
+    private volatile Subscription upstream;
+    private volatile boolean upstreamDone;
+    private volatile Throwable upstreamError;
+    private volatile boolean cancelled;
+
+    //drain-confined
+    private final ArrayDeque<Batch> batches = new ArrayDeque<>();
+    private List<Object[]> current = Lists.newArrayList();
+    private long requested;
+    private long emitted;
+    private boolean terminated;
+
+    MetaFunctionProcessor(MetaFunction<R> function, Executor executor, int parallelism, int batchSize, boolean ordered) {
+        if (parallelism < 1 || batchSize < 1) {
+            throw new IllegalArgumentException("parallelism and batchSize must be positive");
+        }
+        this.function = function;
+        this.executor = executor;
+        this.parallelism = parallelism;
+        this.batchSize = batchSize;
+        this.ordered = ordered;
+    }
+
+    @Override public void subscribe(Subscriber<? super R> s) {
+        if (!subscriber.compareAndSet(null, s)) {
+            s.onSubscribe(new Subscription() {
+                @Override public void request(long n) {
+                }
+
+                @Override public void cancel() {
+                }
+            });
+            s.onError(new IllegalStateException("MetaFunctionProcessor supports a single subscriber"));
+            return;
+        }
+        s.onSubscribe(new Subscription() {
+            @Override public void request(long n) {
+                if (n <= 0) {
+                    //the spec has us fail the stream rather than throw
+                    upstreamError = new IllegalArgumentException("request must be positive, was " + n);
+                } else {
+                    long current;
+                    do {
+                        current = demand.get();
+                    } while (!demand.compareAndSet(current, current + n < 0 ? Long.MAX_VALUE : current + n));
+                }
+                drain();
+            }
+
+            @Override public void cancel() {
+                cancelled = true;
+                drain();
+            }
+        });
+        drain();
+    }
+
+    @Override public void onSubscribe(Subscription s) {
+        if (upstream != null) {
+            s.cancel();
+            return;
+        }
+        upstream = s;
+        drain();
+    }
+
+    @Override public void onNext(Object[] args) {
+        inbox.offer(args);
+        drain();
+    }
+
+    @Override public void onError(Throwable t) {
+        upstreamError = t;
+        drain();
+    }
+
+    @Override public void onComplete() {
+        upstreamDone = true;
+        drain();
+    }
+
+    private void drain() {
+        if (wip.getAndIncrement() != 0) {
+            return;
+        }
+        int missed = 1;
+        do {
+            drainOnce();
+            missed = wip.addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+    private void drainOnce() {
+        Subscriber<? super R> s = subscriber.get();
+        if (terminated || s == null) {
+            return;
+        }
+        if (cancelled) {
+            terminate(null, null);
+            return;
+        }
+        if (upstreamError != null) {
+            terminate(s, upstreamError);
+            return;
+        }
+
+        //emit whatever is ready, as far as demand allows
+        Iterator<Batch> iterator = batches.iterator();
+        while (iterator.hasNext() && demand.get() > 0) {
+            Batch batch = iterator.next();
+            if (!batch.done) {
+                if (ordered) {
+                    break;
+                }
+                continue;
+            }
+            if (batch.error != null) {
+                terminate(s, batch.error);
+                return;
+            }
+            while (batch.next < batch.results.length && demand.get() > 0) {
+                Object result = batch.results[batch.next++];
+                if (result == null) {
+                    terminate(s, new NullPointerException("MetaFunction returned null, which can't be emitted"));
+                    return;
+                }
+                demand.decrementAndGet();
+                emitted++;
+                @SuppressWarnings("unchecked") R r = (R) result;
+                s.onNext(r);
+            }
+            if (batch.next == batch.results.length) {
+                iterator.remove();
+            }
+        }
+
+        //gather arguments into batches while there is room to run them
+        int running = 0;
+        for (Batch batch : batches) {
+            if (!batch.done) {
+                running++;
+            }
+        }
+        Object[] args;
+        while (running < parallelism && (args = inbox.poll()) != null) {
+            current.add(args);
+            if (current.size() == batchSize) {
+                dispatch();
+                running++;
+            }
+        }
+        //a partial batch goes as soon as the inbox runs dry, so batches only fill up while the executor is behind
+        if (!current.isEmpty() && running < parallelism) {
+            dispatch();
+        }
+
+        if (upstreamDone && inbox.isEmpty() && current.isEmpty() && batches.isEmpty()) {
+            terminate(s, null);
+            return;
+        }
+        Subscription upstream = this.upstream;
+        long window = (long) parallelism * batchSize - (requested - emitted);
+        if (upstream != null && !upstreamDone && window > 0) {
+            requested += window;
+            upstream.request(window);
+        }
+    }
+
+    private void dispatch() {
+        Batch batch = new Batch(current.toArray(new Object[current.size()][]));
+        current = Lists.newArrayList();
+        batches.add(batch);
+        try {
+            executor.execute(batch);
+        } catch (RuntimeException e) {
+            batch.error = e;
+            batch.done = true;
+        }
+    }
+
+    private void terminate(Subscriber<? super R> s, Throwable error) {
+        terminated = true;
+        batches.clear();
+        inbox.clear();
+        Subscription upstream = this.upstream;
+        if (upstream != null && (s == null || error != null)) {
+            upstream.cancel();
+        }
+        if (s != null) {
+            if (error != null) {
+                s.onError(error);
+            } else {
+                s.onComplete();
+            }
+        }
+    }
+
+    final class Batch implements Runnable {
+        final Object[][] rows;
+        final Object[] results;
+        volatile boolean done;
+        volatile Throwable error;
+        //drain-confined
+        int next;
+
+        Batch(Object[][] rows) {
+            this.rows = rows;
+            this.results = new Object[rows.length];
+        }
+
+        @Override public void run() {
+            try {
+                function.applyRows(rows, results, 0, rows.length);
+            } catch (Throwable t) {
+                error = t;
+            }
+            done = true;
+            drain();
+        }
+    }
+}
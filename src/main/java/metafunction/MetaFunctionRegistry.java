@@ -0,0 +1,136 @@
+package metafunction;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A table of MetaFunctions for handlers that are looked up at runtime, e.g. from a {@code @MetaMethod}
+ * registration method:
+ *
+ * <pre>
+ *     &#64;MetaMethod Router route(String path, MetaFunction&lt;Object&gt; handler) {
+ *         routes.register(path, handler);
+ *         return this;
+ *     }
+ * </pre>
+ *
+ * A key can hold one handler per arity plus one that accepts any number of arguments, and {@link #apply}
+ * picks the handler for the number of arguments it was given. Lookups never lock: each key maps to an
+ * immutable set of handlers, which writers replace with compare-and-set. {@link #replaceAll} swaps in
+ * a whole table at once, for hot reloading.
+ */
+public class MetaFunctionRegistry<K, R> {
+    private volatile ConcurrentMap<K, Handlers<R>> table = new ConcurrentHashMap<>();
+
+    /**
+     * Registers {@code function} under {@code key}, replacing any handler already registered there with
+     * the same arity.
+     */
+    public MetaFunctionRegistry<K, R> register(K key, MetaFunction<R> function) {
+        while (true) {
+            ConcurrentMap<K, Handlers<R>> table = this.table;
+            Handlers<R> current = table.get(key);
+            boolean written = current == null
+                    ? table.putIfAbsent(key, Handlers.<R>empty().with(function)) == null
+                    : table.replace(key, current, current.with(function));
+            //a write into a table that replaceAll has since swapped out is lost, so make it again in the new one
+            if (written && table == this.table) {
+                return this;
+            }
+        }
+    }
+
+    /**
+     * Removes every handler registered under {@code key}.
+     */
+    public MetaFunctionRegistry<K, R> unregister(K key) {
+        ConcurrentMap<K, Handlers<R>> table;
+        do {
+            table = this.table;
+            table.remove(key);
+        } while (table != this.table);
+        return this;
+    }
+
+    /**
+     * Atomically replaces every handler in this registry with the handlers currently in {@code other}.
+     * Readers see either the old table or the new one, never a mix. The handlers are copied, so later changes
+     * to {@code other} don't affect this registry; changes made to it while the copy is taken may or may not be.
+     */
+    public MetaFunctionRegistry<K, R> replaceAll(MetaFunctionRegistry<K, R> other) {
+        this.table = new ConcurrentHashMap<>(other.table);
+        return this;
+    }
+
+    /**
+     * @return the handler under {@code key} for {@code arity} arguments, falling back to a handler which
+     *     accepts any number of arguments, or null if there is none.
+     */
+    public MetaFunction<R> get(K key, int arity) {
+        Handlers<R> handlers = table.get(key);
+        return handlers == null ? null : handlers.get(arity);
+    }
+
+    public boolean contains(K key) {
+        return table.containsKey(key);
+    }
+
+    public int size() {
+        return table.size();
+    }
+
+    public R apply(K key, Object... args) {
+        MetaFunction<R> function = get(key, args.length);
+        if (function == null) {
+            throw new IllegalArgumentException("no handler for " + key + " taking " + args.length + " arguments");
+        }
+        return function.apply(args);
+    }
+
+    /**
+     * Like {@link #apply(Object, Object...)}, with the arguments in a reusable {@link ArgFrame}.
+     */
+    public R apply(K key, ArgFrame frame) {
+        MetaFunction<R> function = get(key, frame.size());
+        if (function == null) {
+            int arity = frame.size();
+            frame.clear();
+            throw new IllegalArgumentException("no handler for " + key + " taking " + arity + " arguments");
+        }
+        return function.apply(frame);
+    }
+
+    static final class Handlers<R> {
+        @SuppressWarnings("unchecked")
+        private static final Handlers<Object> EMPTY = new Handlers<Object>((MetaFunction<Object>[]) new MetaFunction<?>[0], null);
+
+        final MetaFunction<R>[] byArity;
+        final MetaFunction<R> anyArity;
+
+        private Handlers(MetaFunction<R>[] byArity, MetaFunction<R> anyArity) {
+            this.byArity = byArity;
+            this.anyArity = anyArity;
+        }
+
+        @SuppressWarnings("unchecked")
+        static <R> Handlers<R> empty() {
+            return (Handlers<R>) EMPTY;
+        }
+
+        MetaFunction<R> get(int arity) {
+            MetaFunction<R> function = arity < byArity.length ? byArity[arity] : null;
+            return function != null ? function : anyArity;
+        }
+
+        Handlers<R> with(MetaFunction<R> function) {
+            int arity = function.arity();
+            if (arity < 0) {
+                return new Handlers<>(byArity, function);
+            }
+            MetaFunction<R>[] updated = Arrays.copyOf(byArity, Math.max(byArity.length, arity + 1));
+            updated[arity] = function;
+            return new Handlers<>(updated, anyArity);
+        }
+    }
+}
@@ -8,4 +8,47 @@ import java.lang.annotation.Target;
 @Retention(RetentionPolicy.RUNTIME)
 @Target(ElementType.METHOD)
 public @interface MetaMethod {
+    /** also generate overloads for the int/long/double Functions, which reach the handler without boxing */
+    boolean primitives() default false;
+
+    /** how the generated overloads invoke the user's function; DEFAULT defers to the metafunction.engine processor option */
+    Engine engine() default Engine.DEFAULT;
+
+    /** the fewest parameters a function passed to this method may take */
+    int minArity() default 0;
+
+    /**
+     * the most parameters a function passed to this method may take; -1 defers to the metafunction.maxArity
+     * processor option, which defaults to 10. Above 10, the generated class declares its own F11, F12...
+     */
+    int maxArity() default -1;
+
+    /**
+     * also generate a {@code <name>Async} overload for each overload, which runs this method on the generated
+     * class's asyncExecutor() and returns a CompletableFuture of its result
+     */
+    boolean async() default false;
+
+    /** if positive, wrap functions passed to this method in MetaFunction.memoized, caching up to this many results */
+    long memoize() default 0;
+
+    /** with memoize, how long each cached result is kept; 0 keeps it until it's evicted */
+    long memoizeTtlMillis() default 0;
+
+    /** record call counts, latency and exceptions in MetaMetrics; -Ametafunction.instrument=true turns this on everywhere */
+    boolean instrument() default false;
+
+    /**
+     * reuse the MetaFunction made for a function the last time the same function instance was passed, so
+     * registering a non-capturing lambda repeatedly doesn't allocate
+     */
+    boolean reuse() default false;
+
+    enum Engine {
+        DEFAULT,
+        /** a MetaFunction.ArityN calling the function directly */
+        INVOKER,
+        /** a MetaFunction.Handle calling the function through a bound MethodHandle */
+        METHOD_HANDLE
+    }
 }
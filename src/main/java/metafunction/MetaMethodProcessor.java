@@ -4,69 +4,222 @@ import com.google.common.base.Joiner;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
+import com.google.common.hash.Hashing;
+import com.google.common.io.Files;
 
 import javax.annotation.processing.AbstractProcessor;
 import javax.annotation.processing.Filer;
 import javax.annotation.processing.ProcessingEnvironment;
 import javax.annotation.processing.RoundEnvironment;
 import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.annotation.processing.SupportedOptions;
 import javax.annotation.processing.SupportedSourceVersion;
 import javax.lang.model.SourceVersion;
 import javax.lang.model.element.Element;
 import javax.lang.model.element.ElementKind;
 import javax.lang.model.element.ExecutableElement;
-import javax.lang.model.element.Name;
 import javax.lang.model.element.TypeElement;
 import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.PrimitiveType;
+import javax.lang.model.type.TypeKind;
 import javax.lang.model.type.TypeMirror;
+import javax.tools.Diagnostic;
 import javax.tools.JavaFileObject;
+import java.io.File;
 import java.io.IOException;
+import java.io.Writer;
 import java.lang.reflect.Modifier;
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 
 @SupportedAnnotationTypes("metafunction.MetaMethod")
 @SupportedSourceVersion(SourceVersion.RELEASE_8)
+@SupportedOptions({MetaMethodProcessor.ENGINE_OPTION, MetaMethodProcessor.MAX_ARITY_OPTION, MetaMethodProcessor.CACHE_DIR_OPTION,
+        MetaMethodProcessor.INSTRUMENT_OPTION, MetaMethodProcessor.SIZE_REPORT_OPTION, MetaMethodProcessor.TIMINGS_OPTION})
 public class MetaMethodProcessor extends AbstractProcessor {
+    //bump whenever the generated source changes, so cached output from older versions isn't reused
+    static final String VERSION = "8";
+    static final String ENGINE_OPTION = "metafunction.engine";
+    static final String MAX_ARITY_OPTION = "metafunction.maxArity";
+    static final String CACHE_DIR_OPTION = "metafunction.cacheDir";
+    static final String INSTRUMENT_OPTION = "metafunction.instrument";
+    static final String SIZE_REPORT_OPTION = "metafunction.sizeReport";
+    static final String TIMINGS_OPTION = "metafunction.timings";
+    static final int DEFAULT_MAX_ARITY = 10;
+    static final int MAX_LIBRARY_ARITY = 10;
+
+    //time spent in each phase, summed over rounds
+    long collectNanos;
+    long renderNanos;
+    long writeNanos;
 
     static class CompilationUnit {
-        final Map<Name, MetaClassDef> classDefs = Maps.newHashMap();
+        //sorted, so the generated files don't depend on the order javac hands us elements in
+        final Map<String, MetaClassDef> classDefs = Maps.newTreeMap();
+        long renderNanos;
+        long writeNanos;
 
-        public void addMethodDef(Element method, TypeElement origin, ProcessingEnvironment environment) {
+        public void addMethodDef(Element method, ProcessingEnvironment environment) {
             TypeElement clazz = (TypeElement) method.getEnclosingElement();
-            Name className = clazz.getQualifiedName();
-            Name methodName = method.getSimpleName();
+            String className = clazz.getQualifiedName().toString();
+            String methodName = method.getSimpleName().toString();
+            MetaMethodDef methodDef = new MetaMethodDef((ExecutableElement) method, environment);
+            if(methodDef.minArity() < 0 || methodDef.minArity() > methodDef.maxArity()) {
+                environment.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                        "minArity must be between 0 and maxArity (" + methodDef.maxArity() + ")", method);
+                return;
+            }
+            if(methodDef.functionParams.isEmpty()) {
+                environment.getMessager().printMessage(Diagnostic.Kind.ERROR, "@MetaMethod methods need a MetaFunction parameter", method);
+                return;
+            }
+            if(methodDef.primitives && methodDef.primitiveTypes.isEmpty()) {
+                environment.getMessager().printMessage(Diagnostic.Kind.WARNING,
+                        "primitives has no effect: the MetaFunction's result type can't hold an Integer, Long or Double", method);
+            }
+            if(methodDef.routed() && methodDef.functionParams.size() > 1) {
+                environment.getMessager().printMessage(Diagnostic.Kind.ERROR, "@Route methods take a single MetaFunction parameter", method);
+                return;
+            }
+            if(methodDef.routed() && methodDef.keyParam == null) {
+                environment.getMessager().printMessage(Diagnostic.Kind.ERROR, "@Route methods need a String key parameter", method);
+                return;
+            }
+            if(Sets.newHashSet(methodDef.routeKeys).size() < methodDef.routeKeys.size()) {
+                environment.getMessager().printMessage(Diagnostic.Kind.ERROR, "@Route keys must be unique", method);
+                return;
+            }
             if(!classDefs.containsKey(className)) {
-                classDefs.put(className, new MetaClassDef(clazz, origin));
+                classDefs.put(className, new MetaClassDef(clazz));
             }
-            classDefs.get(className).methods.put(methodName, new MetaMethodDef((ExecutableElement) method, environment));
+            classDefs.get(className).methods.put(methodName, methodDef);
         }
 
-        public void compile(Filer filer) throws IOException {
-            for (Map.Entry<Name, MetaClassDef> classDefEntry : classDefs.entrySet()) {
-                MetaClassDef classDef = classDefEntry.getValue();
-                JavaFileObject sourceFile = filer.createSourceFile(classDef.fullyQualifiedName, classDef.annotation);
-                try(JavaWriter writer = new JavaWriter(sourceFile.openWriter())) {
-                    classDef.compile(writer);
+        public void compile(Filer filer, SourceCache cache) throws IOException {
+            long start = System.nanoTime();
+            List<MetaClassDef> classes = Lists.newArrayList(classDefs.values());
+            String[] fingerprints = new String[classes.size()];
+            String[] sources = new String[classes.size()];
+            List<Integer> misses = Lists.newArrayList();
+            for (int c = 0; c < classes.size(); c++) {
+                MetaClassDef classDef = classes.get(c);
+                fingerprints[c] = cache == null ? null : classDef.fingerprint();
+                sources[c] = cache == null ? null : cache.get(classDef.fullyQualifiedName, fingerprints[c]);
+                if (sources[c] == null) {
+                    misses.add(c);
+                }
+            }
+            //rendering only reads what the defs captured from their elements, so classes can render in parallel.
+            //everything that touches javac or the cache stays on this thread
+            if (misses.size() == 1) {
+                sources[misses.get(0)] = classes.get(misses.get(0)).render();
+            } else if (!misses.isEmpty()) {
+                List<ForkJoinTask<String>> renders = Lists.newArrayList();
+                for (int c : misses) {
+                    renders.add(ForkJoinPool.commonPool().submit(ForkJoinTask.adapt(classes.get(c)::render)));
+                }
+                for (int m = 0; m < misses.size(); m++) {
+                    try {
+                        sources[misses.get(m)] = renders.get(m).join();
+                    } catch (RuntimeException e) {
+                        if (e.getCause() instanceof IOException) {
+                            throw (IOException) e.getCause();
+                        }
+                        throw e;
+                    }
                 }
             }
+            for (int c : misses) {
+                if (cache != null) {
+                    cache.put(classes.get(c).fullyQualifiedName, fingerprints[c], sources[c]);
+                }
+            }
+            long rendered = System.nanoTime();
+            renderNanos += rendered - start;
+            for (int c = 0; c < classes.size(); c++) {
+                MetaClassDef classDef = classes.get(c);
+                classDef.sourceLength = sources[c].length();
+                //the annotated class is the only originating element, which is what lets gradle treat us as an isolating processor
+                JavaFileObject sourceFile = filer.createSourceFile(classDef.fullyQualifiedName, classDef.type);
+                try(Writer writer = sourceFile.openWriter()) {
+                    writer.write(sources[c]);
+                }
+            }
+            writeNanos += System.nanoTime() - rendered;
+        }
+    }
+
+    /**
+     * Generated sources from the previous build, keyed by a fingerprint of everything that goes into them.
+     * A class whose fingerprint hasn't changed gets exactly the same bytes as last time.
+     */
+    static class SourceCache {
+        final File directory;
+        int hits;
+        int misses;
+
+        SourceCache(File directory) {
+            this.directory = directory;
+        }
+
+        String get(String className, String fingerprint) throws IOException {
+            File source = new File(directory, className + ".java");
+            File hash = new File(directory, className + ".sha256");
+            if (source.isFile() && hash.isFile() && Files.asCharSource(hash, StandardCharsets.UTF_8).read().equals(fingerprint)) {
+                hits++;
+                return Files.asCharSource(source, StandardCharsets.UTF_8).read();
+            }
+            misses++;
+            return null;
+        }
+
+        void put(String className, String fingerprint, String source) throws IOException {
+            if (!directory.isDirectory() && !directory.mkdirs()) {
+                throw new IOException("could not create " + directory);
+            }
+            //drop the old hash before touching the source, and write the new one last, so a source left half
+            //written by an interrupted build has no hash and is never trusted
+            File hash = new File(directory, className + ".sha256");
+            if (hash.exists() && !hash.delete()) {
+                throw new IOException("could not delete " + hash);
+            }
+            Files.asCharSink(new File(directory, className + ".java"), StandardCharsets.UTF_8).write(source);
+            Files.asCharSink(hash, StandardCharsets.UTF_8).write(fingerprint);
         }
     }
 
     static class MetaClassDef {
+        //one per rendering thread. The common pool's threads outlive the compile in a build daemon, so a buffer
+        //grown past RENDER_BUFFER_LIMIT chars by a huge class is dropped after rendering it rather than kept
+        private static final int RENDER_BUFFER_LIMIT = 1 << 18;
+        private static final ThreadLocal<StringBuilder> RENDER_BUFFER = new ThreadLocal<StringBuilder>() {
+            @Override protected StringBuilder initialValue() {
+                return new StringBuilder(1 << 16);
+            }
+        };
+
         final TypeElement type;
-        final TypeElement annotation;
         final String simpleName;
         final String packageName;
         final String fullyQualifiedName;
-        final Map<Name, MetaMethodDef> methods = Maps.newHashMap();
+        final String qualifiedTypeName;
+        final Map<String, MetaMethodDef> methods = Maps.newTreeMap();
+        int sourceLength;
 
-        MetaClassDef(TypeElement type, TypeElement annotation) {
+        MetaClassDef(TypeElement type) {
             this.type = type;
-            this.annotation = annotation;
             Element classPackage = type.getEnclosingElement();
             while(classPackage.getKind().equals(ElementKind.CLASS)) {
                 classPackage = classPackage.getEnclosingElement();
@@ -74,99 +227,560 @@ public class MetaMethodProcessor extends AbstractProcessor {
             this.simpleName = type.getSimpleName().toString() + "_MetaFunction";
             this.fullyQualifiedName = ""+classPackage +"."+ this.simpleName;
             this.packageName = classPackage.toString();
+            this.qualifiedTypeName = type.getQualifiedName().toString();
+        }
+
+        String fingerprint() {
+            StringBuilder fingerprint = new StringBuilder(VERSION).append('\n').append(fullyQualifiedName).append('\n');
+            for (MetaMethodDef methodDef : methods.values()) {
+                fingerprint.append(methodDef.signature()).append('\n');
+            }
+            return Hashing.sha256().hashString(fingerprint, StandardCharsets.UTF_8).toString();
+        }
+
+        String render() throws IOException {
+            StringBuilder buffer = RENDER_BUFFER.get();
+            buffer.setLength(0);
+            try {
+                compile(new JavaWriter(buffer));
+                return buffer.toString();
+            } finally {
+                if (buffer.capacity() > RENDER_BUFFER_LIMIT) {
+                    RENDER_BUFFER.remove();
+                }
+            }
+        }
+
+        int overloadCount() {
+            int overloads = 0;
+            for (MetaMethodDef methodDef : methods.values()) {
+                overloads += methodDef.overloadCount();
+            }
+            return overloads;
         }
 
         public void compile(JavaWriter writer) throws IOException {
             writer.addPackage(packageName);
             writer.addImport(MetaFunction.class);
+            writer.addImport(MetaAdapters.class);
             writer.addImport(Functions.class);
+            for (MetaMethodDef methodDef : methods.values()) {
+                if (methodDef.async()) {
+                    writer.addImport(CompletableFuture.class);
+                    writer.addImport(Executor.class);
+                    break;
+                }
+            }
+            for (MetaMethodDef methodDef : methods.values()) {
+                if (methodDef.instrument()) {
+                    writer.addImport(MetaMetrics.class);
+                    break;
+                }
+            }
+            for (MetaMethodDef methodDef : methods.values()) {
+                if (methodDef.routed()) {
+                    writer.addImport(ArgFrame.class);
+                    writer.addImport(AtomicReferenceArray.class);
+                    break;
+                }
+            }
             writer.annotation("SuppressWarnings(\"unchecked\")");
             writer.beginType(simpleName+"<R>", "abstract class", 0);
+            int maxArity = MAX_LIBRARY_ARITY;
+            for (MetaMethodDef methodDef : methods.values()) {
+                maxArity = Math.max(maxArity, methodDef.maxArity());
+            }
+            //Functions stops at F10, so larger arities get their own interfaces
+            for (int i = MAX_LIBRARY_ARITY + 1; i <= maxArity; i++) {
+                List<String> genericParams = Lists.newArrayList();
+                String[] applyParams = new String[i * 2];
+                for (int p = 0; p < i; p++) {
+                    genericParams.add("T" + p);
+                    applyParams[p * 2] = "T" + p;
+                    applyParams[p * 2 + 1] = "p" + p;
+                }
+                writer.beginType("F" + i + "<" + MetaMethodDef.JOINER.join(genericParams) + ",R>", "interface", Modifier.PUBLIC, "Functions.F<R>");
+                writer.beginMethod("R", "apply", Modifier.ABSTRACT, applyParams);
+                writer.endMethod();
+                writer.endType();
+            }
+            boolean async = false;
+            for (MetaMethodDef methodDef : methods.values()) {
+                if (methodDef.instrument()) {
+                    writer.field("MetaMetrics.Method", methodDef.metricsField(), Modifier.PRIVATE | Modifier.STATIC | Modifier.FINAL,
+                            String.format("MetaMetrics.method(%s, %s)",
+                                    JavaWriter.stringLiteral(qualifiedTypeName),
+                                    JavaWriter.stringLiteral(methodDef.name)));
+                }
+                if (methodDef.routed()) {
+                    //a slot per compile-time key and arity, plus one for any other arity. Handlers are usually registered
+                    //on one thread and dispatched on others, so the slots are published through an atomic array
+                    writer.field("AtomicReferenceArray<MetaFunction<R>>", "routes$" + methodDef.name, Modifier.PRIVATE | Modifier.FINAL,
+                            String.format("new AtomicReferenceArray<MetaFunction<R>>(%d)", methodDef.routeKeys.size() * (MAX_LIBRARY_ARITY + 2)));
+                }
+            }
             for (MetaMethodDef methodDef : methods.values()) {
                 methodDef.compile(writer);
+                async |= methodDef.async();
+                if (methodDef.routed()) {
+                    methodDef.compileDispatcher(writer);
+                }
+            }
+            if (async) {
+                //override to run the *Async overloads somewhere other than MetaFunction.asyncExecutor()
+                writer.beginMethod("Executor", "asyncExecutor", Modifier.PROTECTED);
+                writer.statement("return MetaFunction.asyncExecutor()");
+                writer.endMethod();
             }
             writer.endType();
         }
     }
 
+    /**
+     * A meta method, read from its element up front: the javac model isn't thread-safe, and classes are rendered
+     * in parallel, so nothing past the constructor may touch elements or the processing environment.
+     */
     static class MetaMethodDef {
         static final Joiner JOINER = Joiner.on(",");
-        final ExecutableElement definition;
-        final ProcessingEnvironment environment;
+        static final String[] PRIMITIVES = {"Int", "Long", "Double"};
+        static final TypeKind[] PRIMITIVE_KINDS = {TypeKind.INT, TypeKind.LONG, TypeKind.DOUBLE};
+        static final int MAX_PRIMITIVE_ARITY = 3;
+        final String name;
+        final String returnType;
+        final boolean returnsVoid;
+        //the return type, boxed
+        final String resultType;
+        final List<String> paramTypes = Lists.newArrayList();
+        final List<String> paramNames = Lists.newArrayList();
+        //the indexes of the MetaFunction parameters, which each get a set of overloads
+        final List<Integer> functionParams = Lists.newArrayList();
+        final boolean varArgs;
+        final boolean primitives;
+        //with primitives, those whose boxed type the method's MetaFunction can return
+        final List<String> primitiveTypes = Lists.newArrayList();
+        final MetaMethod.Engine engine;
+        final int minArity;
+        final int maxArity;
+        final boolean async;
+        final long memoize;
+        final long memoizeTtlMillis;
+        final boolean instrument;
+        final boolean reuse;
+        //with @Route, the keys known at compile time and the first String parameter, which holds the key
+        final List<String> routeKeys;
+        final String dispatcher;
+        final String keyParam;
 
         MetaMethodDef(ExecutableElement definition, ProcessingEnvironment environment) {
-            this.definition = definition;
-            this.environment = environment;
+            MetaMethod metaMethod = definition.getAnnotation(MetaMethod.class);
+            Map<String, String> options = environment.getOptions();
+            this.name = definition.getSimpleName().toString();
+            TypeMirror returnType = definition.getReturnType();
+            this.returnType = returnType.toString();
+            this.returnsVoid = returnType.getKind() == TypeKind.VOID;
+            if(returnsVoid) {
+                this.resultType = "Void";
+            } else if(returnType.getKind().isPrimitive()) {
+                this.resultType = environment.getTypeUtils().boxedClass((PrimitiveType) returnType).getQualifiedName().toString();
+            } else {
+                this.resultType = this.returnType;
+            }
+            for(VariableElement param : definition.getParameters()) {
+                paramTypes.add(param.asType().toString());
+                paramNames.add(param.getSimpleName().toString());
+                if(param.asType().toString().startsWith("metafunction.MetaFunction")) {
+                    functionParams.add(paramTypes.size() - 1);
+                }
+            }
+            this.varArgs = definition.isVarArgs();
+            this.primitives = metaMethod.primitives();
+            if(primitives && !functionParams.isEmpty()) {
+                //a primitive adapter returns a boxed Integer, Long or Double as R, so only offer the ones R can hold
+                TypeMirror functionType = definition.getParameters().get(functionParams.get(0)).asType();
+                List<? extends TypeMirror> typeArguments = functionType.getKind() == TypeKind.DECLARED
+                        ? ((DeclaredType) functionType).getTypeArguments()
+                        : Collections.<TypeMirror>emptyList();
+                for(int p = 0; p < PRIMITIVES.length; p++) {
+                    TypeMirror boxed = environment.getTypeUtils().boxedClass(
+                            environment.getTypeUtils().getPrimitiveType(PRIMITIVE_KINDS[p])).asType();
+                    if(typeArguments.isEmpty() || environment.getTypeUtils().isAssignable(boxed, typeArguments.get(0))) {
+                        primitiveTypes.add(PRIMITIVES[p]);
+                    }
+                }
+            }
+            MetaMethod.Engine engine = metaMethod.engine();
+            String engineOption = options.get(ENGINE_OPTION);
+            if(engine == MetaMethod.Engine.DEFAULT && engineOption != null) {
+                engine = MetaMethod.Engine.valueOf(engineOption.toUpperCase(Locale.ROOT));
+            }
+            this.engine = engine == MetaMethod.Engine.DEFAULT ? MetaMethod.Engine.INVOKER : engine;
+            this.minArity = metaMethod.minArity();
+            String maxArityOption = options.get(MAX_ARITY_OPTION);
+            this.maxArity = metaMethod.maxArity() >= 0 ? metaMethod.maxArity()
+                    : maxArityOption == null ? DEFAULT_MAX_ARITY : Integer.parseInt(maxArityOption.trim());
+            this.async = metaMethod.async();
+            this.memoize = metaMethod.memoize();
+            this.memoizeTtlMillis = metaMethod.memoizeTtlMillis();
+            this.instrument = metaMethod.instrument() || Boolean.parseBoolean(options.get(INSTRUMENT_OPTION));
+            this.reuse = metaMethod.reuse();
+            Route route = definition.getAnnotation(Route.class);
+            this.routeKeys = route == null ? Collections.<String>emptyList() : Arrays.asList(route.value());
+            this.dispatcher = route == null ? null : route.dispatcher();
+            int keyIndex = paramTypes.indexOf(String.class.getName());
+            this.keyParam = keyIndex < 0 ? null : paramNames.get(keyIndex);
         }
 
         public void compile(JavaWriter writer) throws IOException {
-            List<? extends VariableElement> parameters = definition.getParameters();
-            String[] paramDefs = new String[parameters.size() * 2];
+            String[] paramDefs = new String[paramTypes.size() * 2];
             List<String>delegateArgs = Lists.newArrayList();
-            int metaParam = -1;
-            int currentParamIndex = 0;
-            Set<String> paramNames = Sets.newHashSet();
-            for(VariableElement param : parameters) {
-                TypeMirror paramType = param.asType();
-                Name paramName = param.getSimpleName();
-                paramNames.add(paramName.toString());
-                if(paramType.toString().startsWith("metafunction.MetaFunction")) {
-                    paramDefs[currentParamIndex] = "MetaFunction<R>";
-                    metaParam = currentParamIndex;
+            for(int p = 0; p < paramTypes.size(); p++) {
+                if(functionParams.contains(p)) {
+                    paramDefs[p * 2] = "MetaFunction<R>";
                 } else {
-                    paramDefs[currentParamIndex] = paramType.toString();
+                    paramDefs[p * 2] = paramTypes.get(p);
                 }
-                paramDefs[currentParamIndex + 1] = paramName.toString();
-                delegateArgs.add(paramName.toString());
-                currentParamIndex += 2;
+                paramDefs[p * 2 + 1] = this.paramNames.get(p);
+                delegateArgs.add(this.paramNames.get(p));
             }
-            if(definition.isVarArgs()) {
+            if(varArgs) {
                 paramDefs[paramDefs.length -2] = paramDefs[paramDefs.length -2].replaceAll("\\[]$", "...");
             }
-            String methodName = definition.getSimpleName().toString();
-            String returnType = definition.getReturnType().toString();
+            String methodName = name;
             writer.beginMethod(returnType, methodName, Modifier.ABSTRACT, paramDefs);
             writer.endMethod();
+            if(async()) {
+                writeAsyncOverload(writer, "", methodName, paramDefs);
+            }
 
+            //overloading every MetaFunction parameter at once would write arities^n overloads. instead each gets a set
+            //of its own while the others stay MetaFunctions, which callers make with MetaAdapters.
+            //memoize and instrument apply to the first MetaFunction parameter, whichever set is being written
+            int primary = functionParams.get(0);
+            for(int p : functionParams) {
+                delegateArgs.set(primary, p == primary ? paramNames.get(primary) : wrap(paramNames.get(primary)));
+                compileOverloads(writer, methodName, paramDefs, delegateArgs, p * 2, p == primary);
+                paramDefs[p * 2] = "MetaFunction<R>";
+                delegateArgs.set(p, paramNames.get(p));
+            }
+        }
+
+        private void compileOverloads(JavaWriter writer, String methodName, String[] paramDefs, List<String> delegateArgs,
+                                      int metaParam, boolean primary) throws IOException {
+            String function = paramDefs[metaParam + 1];
             List<String> genericFunctionParams = Lists.newArrayList();
-            List<String> applyArgs = Lists.newArrayList();
-            String argsVariableName = "args";
-            int variableNameSuffix = 0;
-            while(paramNames.contains(argsVariableName)) {
-                argsVariableName = "args" + variableNameSuffix++;
+            for(int i = 0; i < minArity(); i++) {
+                genericFunctionParams.add("T"+i);
             }
-            for(int i = 0; i    <= 10; i++) {
+            //adapters come from MetaAdapters, so generated classes share their classes and call sites
+            for(int i = minArity(); i <= maxArity(); i++) {
                 String functionResultGenerics = "<"+ (genericFunctionParams.isEmpty()?"": JOINER.join(genericFunctionParams) +",") +"R>";
                 String methodResultGenerics = genericFunctionParams.isEmpty()?"" : ("<" + JOINER.join(genericFunctionParams) +"> ");
-                paramDefs[metaParam] =  "Functions.F"+i+functionResultGenerics;
-                delegateArgs.set(metaParam / 2, String.format("MetaFunction.of(%s -> %s.apply(%s))",
-                        argsVariableName,
-                        paramDefs[metaParam + 1],
-                        JOINER.join(applyArgs)));
-
-                writer.beginMethod(methodResultGenerics + " " + returnType, methodName, Modifier.PUBLIC, paramDefs);
-                writer.statement("%s %s(%s)",
-                        returnType.equals("void") ? "" : "return",
-                        methodName,
-                        JOINER.join(delegateArgs));
-                writer.endMethod();
+                if(i > MAX_LIBRARY_ARITY) {
+                    //F11 and up are declared by this class, so they are adapted through a MethodHandle
+                    paramDefs[metaParam] =  "F"+i+functionResultGenerics;
+                    delegateArgs.set(metaParam / 2, wrap(primary, reuse()
+                            ? String.format("MetaAdapters.reuseWide(%s)", function)
+                            : String.format("MetaAdapters.wide(%s)", function)));
+                } else if(engine() == MetaMethod.Engine.METHOD_HANDLE) {
+                    paramDefs[metaParam] =  "Functions.F"+i+functionResultGenerics;
+                    delegateArgs.set(metaParam / 2, wrap(primary, String.format(reuse() ? "MetaAdapters.reuseHandle(%s, %d)" : "MetaAdapters.handle(%s, %d)",
+                            function,
+                            i)));
+                } else {
+                    paramDefs[metaParam] =  "Functions.F"+i+functionResultGenerics;
+                    delegateArgs.set(metaParam / 2, wrap(primary, reuse()
+                            ? String.format("MetaAdapters.reuse(%s, %d)", function, i)
+                            : String.format("MetaAdapters.of%d(%s)", i, function)));
+                }
+
+                writeOverload(writer, methodResultGenerics, returnType, methodName, paramDefs, delegateArgs, primary ? i : -1);
                 genericFunctionParams.add("T"+i);
-                applyArgs.add("(T"+i+") " + argsVariableName + "[" + i +"]");
             }
+
+            if(primitives) {
+                for(String primitive : primitiveTypes) {
+                    for(int i = Math.max(1, minArity()); i <= Math.min(MAX_PRIMITIVE_ARITY, maxArity()); i++) {
+                        paramDefs[metaParam] = "Functions." + primitive + "F" + i;
+                        delegateArgs.set(metaParam / 2, wrap(primary, reuse()
+                                ? String.format("MetaAdapters.<R>reuse%s(%s, %d)", primitive, function, i)
+                                : String.format("MetaAdapters.<R>of%s%d(%s)", primitive, i, function)));
+                        writeOverload(writer, "", returnType, methodName, paramDefs, delegateArgs, primary ? i : -1);
+                    }
+                }
+            }
+        }
+
+        /** the number of overloads compile() writes for this method, not counting the abstract method itself */
+        int overloadCount() {
+            int overloads = maxArity() - minArity() + 1;
+            if(primitives) {
+                overloads += primitiveTypes.size() * Math.max(0, Math.min(MAX_PRIMITIVE_ARITY, maxArity()) - Math.max(1, minArity()) + 1);
+            }
+            overloads *= functionParams.size();
+            //each overload, and the abstract method, gets an Async twin
+            return async() ? overloads * 2 + 1 : overloads;
+        }
+
+        /** wraps the adapter when it is for the first MetaFunction parameter, the one the method's options apply to */
+        String wrap(boolean primary, String adapter) {
+            return primary ? wrap(adapter) : adapter;
+        }
+
+        /** wraps the adapter for a user's function in whatever this method asks for on top of invoking it */
+        String wrap(String adapter) {
+            if(memoize > 0) {
+                adapter = memoizeTtlMillis > 0
+                        ? String.format("MetaFunction.memoized(%s, %dL, %dL, java.util.concurrent.TimeUnit.MILLISECONDS)",
+                                adapter, memoize, memoizeTtlMillis)
+                        : String.format("MetaFunction.memoized(%s, %dL)", adapter, memoize);
+            }
+            if(instrument()) {
+                adapter = String.format("MetaMetrics.instrument(%s, %s)", adapter, metricsField());
+            }
+            if(routed()) {
+                adapter = String.format("routed$%s(%s, %s)", name, keyParam, adapter);
+            }
+            return adapter;
+        }
+
+        boolean routed() {
+            return dispatcher != null;
+        }
+
+        /**
+         * For @Route, the methods which fill the routes$ slots from the generated overloads, and the dispatch methods
+         * which read them.
+         */
+        void compileDispatcher(JavaWriter writer) throws IOException {
+            int anyArity = MAX_LIBRARY_ARITY + 1;
+            int slots = MAX_LIBRARY_ARITY + 2;
+            writer.beginMethod("int", "routeIndex$" + name, Modifier.PRIVATE | Modifier.STATIC, "String", "key");
+            writer.beginControlFlow("switch (key)");
+            for(int k = 0; k < routeKeys.size(); k++) {
+                writer.statement("case %s: return %d", JavaWriter.stringLiteral(routeKeys.get(k)), k);
+            }
+            writer.statement("default: return -1");
+            writer.endControlFlow();
+            writer.endMethod();
+
+            writer.beginMethod("MetaFunction<R>", "routed$" + name, Modifier.PRIVATE, "String", "key", "MetaFunction<R>", "function");
+            writer.statement("int index = routeIndex$%s(key)", name);
+            //registering a key again replaces its handler, whatever its arity. Registrations are locked against
+            //each other so two of them can't each clear the other's slot; dispatch reads without locking
+            writer.beginControlFlow("if (index >= 0)");
+            writer.statement("int arity = function.arity()");
+            writer.statement("int slot = index * %d + (arity >= 0 && arity < %d ? arity : %d)", slots, anyArity, anyArity);
+            writer.beginControlFlow("synchronized (routes$" + name + ")");
+            writer.statement("routes$%s.set(slot, function)", name);
+            writer.beginControlFlow(String.format("for (int other = index * %d; other < (index + 1) * %d; other++)", slots, slots));
+            writer.beginControlFlow("if (other != slot)");
+            writer.statement("routes$%s.set(other, null)", name);
+            writer.endControlFlow();
+            writer.endControlFlow();
+            writer.endControlFlow();
+            writer.endControlFlow();
+            writer.statement("return function");
+            writer.endMethod();
+
+            //the any-arity slot holds varargs functions and ones wider than the library arities, so it only takes
+            //calls with a matching argument count
+            writer.beginMethod("MetaFunction<R>", "route$" + name, Modifier.PRIVATE, "String", "key", "int", "count");
+            writer.statement("int index = routeIndex$%s(key)", name);
+            writer.statement("MetaFunction<R> function = index >= 0 && count < %d ? routes$%s.get(index * %d + count) : null",
+                    anyArity, name, slots);
+            writer.beginControlFlow("if (function == null && index >= 0)");
+            writer.statement("MetaFunction<R> any = routes$%s.get(index * %d + %d)", name, slots, anyArity);
+            writer.beginControlFlow("if (any != null && (any.arity() < 0 || any.arity() == count))");
+            writer.statement("function = any");
+            writer.endControlFlow();
+            writer.endControlFlow();
+            writer.beginControlFlow("if (function == null)");
+            writer.statement("throw new IllegalArgumentException(\"no route for \" + key + \" taking \" + count + \" arguments\")");
+            writer.endControlFlow();
+            writer.statement("return function");
+            writer.endMethod();
+
+            String[] params = {"a", "b", "c", "d", "e", "f", "g", "h", "i", "j"};
+            for(int i = 0; i <= Math.min(maxArity(), MAX_LIBRARY_ARITY); i++) {
+                String[] dispatchParams = new String[2 + i * 2];
+                dispatchParams[0] = "String";
+                dispatchParams[1] = "key";
+                for(int p = 0; p < i; p++) {
+                    dispatchParams[2 + p * 2] = "Object";
+                    dispatchParams[3 + p * 2] = params[p];
+                }
+                writer.beginMethod("R", dispatcher, Modifier.PUBLIC, dispatchParams);
+                writer.statement("return route$%s(key, %d).apply%d(%s)", name, i, i, JOINER.join(Arrays.copyOf(params, i)));
+                writer.endMethod();
+            }
+            writer.beginMethod("R", dispatcher, Modifier.PUBLIC, "String", "key", "Object...", "args");
+            writer.statement("return route$%s(key, args.length).apply(args)", name);
+            writer.endMethod();
+            writer.beginMethod("R", dispatcher, Modifier.PUBLIC, "String", "key", "ArgFrame", "frame");
+            writer.statement("return route$%s(key, frame.size()).apply(frame)", name);
+            writer.endMethod();
+        }
+
+        /** everything about this method which affects the generated source */
+        String signature() {
+            StringBuilder signature = new StringBuilder()
+                    .append(returnType).append(' ')
+                    .append(name).append('(');
+            for (int p = 0; p < paramTypes.size(); p++) {
+                signature.append(paramTypes.get(p)).append(' ').append(paramNames.get(p)).append(',');
+            }
+            return signature.append(')')
+                    .append(" varargs=").append(varArgs)
+                    .append(" arity=").append(minArity).append("..").append(maxArity)
+                    .append(" engine=").append(engine)
+                    .append(" primitives=").append(primitives)
+                    .append(" async=").append(async)
+                    .append(" instrument=").append(instrument)
+                    .append(" reuse=").append(reuse)
+                    .append(" memoize=").append(memoize).append('/').append(memoizeTtlMillis)
+                    .append(" routes=").append(dispatcher).append(routeKeys)
+                    .toString();
+        }
+
+        boolean instrument() {
+            return instrument;
+        }
+
+        boolean reuse() {
+            return reuse;
+        }
+
+        String metricsField() {
+            return "metrics$" + name;
+        }
+
+        boolean async() {
+            return async;
+        }
+
+        int minArity() {
+            return minArity;
+        }
+
+        int maxArity() {
+            return maxArity;
+        }
+
+        MetaMethod.Engine engine() {
+            return engine;
+        }
+
+        //arity is that of the first MetaFunction parameter's function, or -1 when the overload adapts another one
+        private void writeOverload(JavaWriter writer, String methodGenerics, String returnType, String methodName,
+                                   String[] paramDefs, List<String> delegateArgs, int arity) throws IOException {
+            writer.beginMethod(methodGenerics + " " + returnType, methodName, Modifier.PUBLIC, paramDefs);
+            if(instrument() && arity >= 0) {
+                writer.statement("%s.overloadCalled(%d)", metricsField(), arity);
+            }
+            writer.statement("%s %s(%s)",
+                    returnsVoid ? "" : "return",
+                    methodName,
+                    JOINER.join(delegateArgs));
+            writer.endMethod();
+            if(async()) {
+                writeAsyncOverload(writer, methodGenerics, methodName, paramDefs);
+            }
+        }
+
+        private void writeAsyncOverload(JavaWriter writer, String methodGenerics, String methodName, String[] paramDefs) throws IOException {
+            List<String> paramNames = Lists.newArrayList();
+            for(int p = 1; p < paramDefs.length; p += 2) {
+                paramNames.add(paramDefs[p]);
+            }
+            writer.beginMethod(methodGenerics + " CompletableFuture<" + resultType + ">", methodName + "Async", Modifier.PUBLIC, paramDefs);
+            writer.statement("return CompletableFuture.%s(() -> %s(%s), asyncExecutor())",
+                    returnsVoid ? "runAsync" : "supplyAsync",
+                    methodName,
+                    JOINER.join(paramNames));
+            writer.endMethod();
         }
     }
 
 
+    /** reports processor options it can't use as errors, rather than failing on them halfway through a round */
+    boolean checkOptions() {
+        Map<String, String> options = processingEnv.getOptions();
+        boolean valid = true;
+        String engine = options.get(ENGINE_OPTION);
+        if (engine != null) {
+            try {
+                MetaMethod.Engine.valueOf(engine.toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, String.format(
+                        "metafunction: -A%s=%s is not one of %s", ENGINE_OPTION, engine, Arrays.toString(MetaMethod.Engine.values())));
+                valid = false;
+            }
+        }
+        String maxArity = options.get(MAX_ARITY_OPTION);
+        if (maxArity != null) {
+            int parsed;
+            try {
+                parsed = Integer.parseInt(maxArity.trim());
+            } catch (NumberFormatException e) {
+                parsed = -1;
+            }
+            if (parsed < 0) {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, String.format(
+                        "metafunction: -A%s=%s is not a non-negative number", MAX_ARITY_OPTION, maxArity));
+                valid = false;
+            }
+        }
+        return valid;
+    }
+
     @Override
     public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment env) {
+        if (annotations.isEmpty()) {
+            return false;
+        }
+        if (!checkOptions()) {
+            return false;
+        }
         try {
-            for (TypeElement annotation : annotations) {
-                CompilationUnit compilationUnit = new CompilationUnit();
-                Set<? extends Element> annotatedMethods = env.getElementsAnnotatedWith(MetaMethod.class);
-                for (Element method : annotatedMethods) {
-                    compilationUnit.addMethodDef(method, annotation, processingEnv);
+            long start = System.nanoTime();
+            CompilationUnit compilationUnit = new CompilationUnit();
+            for (Element method : env.getElementsAnnotatedWith(MetaMethod.class)) {
+                compilationUnit.addMethodDef(method, processingEnv);
+            }
+            long collected = System.nanoTime() - start;
+            collectNanos += collected;
+            String cacheDir = processingEnv.getOptions().get(CACHE_DIR_OPTION);
+            SourceCache cache = cacheDir == null ? null : new SourceCache(new File(cacheDir));
+            compilationUnit.compile(processingEnv.getFiler(), cache);
+            renderNanos += compilationUnit.renderNanos;
+            writeNanos += compilationUnit.writeNanos;
+            if (Boolean.parseBoolean(processingEnv.getOptions().get(TIMINGS_OPTION))) {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.NOTE, String.format(
+                        "metafunction: collected %d classes in %.1f ms, rendered them in %.1f ms, wrote them in %.1f ms",
+                        compilationUnit.classDefs.size(), collected / 1e6, compilationUnit.renderNanos / 1e6, compilationUnit.writeNanos / 1e6));
+            }
+            //overloads grow with every MetaFunction parameter, so those methods always say how many they cost
+            for (MetaClassDef classDef : compilationUnit.classDefs.values()) {
+                for (MetaMethodDef methodDef : classDef.methods.values()) {
+                    if (methodDef.functionParams.size() > 1) {
+                        processingEnv.getMessager().printMessage(Diagnostic.Kind.NOTE, String.format(
+                                "metafunction: %s.%s takes %d MetaFunctions and has %d overloads",
+                                classDef.qualifiedTypeName, methodDef.name, methodDef.functionParams.size(), methodDef.overloadCount()),
+                                classDef.type);
+                    }
+                }
+            }
+            if (Boolean.parseBoolean(processingEnv.getOptions().get(SIZE_REPORT_OPTION))) {
+                for (MetaClassDef classDef : compilationUnit.classDefs.values()) {
+                    processingEnv.getMessager().printMessage(Diagnostic.Kind.NOTE, String.format(
+                            "metafunction: %s has %d meta methods, %d overloads, %d chars of source",
+                            classDef.fullyQualifiedName, classDef.methods.size(), classDef.overloadCount(), classDef.sourceLength),
+                            classDef.type);
                 }
-                compilationUnit.compile(processingEnv.getFiler());
+            }
+            if (cache != null) {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.NOTE, String.format(
+                        "metafunction: %d generated classes reused from %s, %d regenerated", cache.hits, cacheDir, cache.misses));
             }
             return false;
         } catch (IOException e) {
@@ -0,0 +1,570 @@
+package metafunction;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Call metrics for instrumented meta methods: {@code @MetaMethod(instrument = true)}, or every meta method
+ * when compiled with {@code -Ametafunction.instrument=true}. Each instrumented method has one
+ * {@link Method}, which counts calls to each generated overload, and invocations, latency and exceptions
+ * of the MetaFunctions they create.
+ *
+ * Methods are published as MXBeans under {@code metafunction:type=MetaMethod}, and handed to every
+ * {@link Reporter} found through {@link ServiceLoader}. Methods that aren't instrumented generate exactly
+ * the same code as before, and pay nothing.
+ */
+public final class MetaMetrics {
+    private static final ConcurrentMap<String, Method> METHODS = new ConcurrentHashMap<>();
+    private static final Logger LOG = Logger.getLogger(MetaMetrics.class.getName());
+
+    private MetaMetrics() {
+    }
+
+    /**
+     * SPI for publishing metrics elsewhere, registered in {@code META-INF/services/metafunction.MetaMetrics$Reporter}.
+     */
+    public interface Reporter {
+        /**
+         * called once for each instrumented method, when its generated class is initialized. Reporters are loaded
+         * once, so one instance receives every method.
+         */
+        void register(Method method);
+    }
+
+    public interface MethodMXBean {
+        String getName();
+        long[] getOverloadCalls();
+        long[] getInvocations();
+        long getExceptions();
+        long getLatencyCount();
+        long getLatencyMedianNanos();
+        long getLatency99thPercentileNanos();
+        long getLatencyMaxNanos();
+    }
+
+    /** called by generated code */
+    public static Method method(String className, String methodName) {
+        String name = className + "#" + methodName;
+        Method method = METHODS.get(name);
+        if (method == null) {
+            Method created = new Method(name);
+            method = METHODS.putIfAbsent(name, created);
+            if (method == null) {
+                method = created;
+                publish(method);
+            }
+        }
+        return method;
+    }
+
+    public static Collection<Method> methods() {
+        return Collections.unmodifiableCollection(METHODS.values());
+    }
+
+    /** called by generated code */
+    public static <T> MetaFunction<T> instrument(MetaFunction<T> function, Method method) {
+        return new Instrumented<T>(function, method);
+    }
+
+    //runs in the generated class's static initializer, so a failure here must not make the class unusable
+    private static void publish(Method method) {
+        try {
+            ObjectName name = new ObjectName("metafunction:type=MetaMethod,name=" + ObjectName.quote(method.getName()));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(method, name);
+        } catch (InstanceAlreadyExistsException e) {
+            //another class loader got there first; its bean stays
+        } catch (JMException | RuntimeException e) {
+            LOG.log(Level.WARNING, "could not register an MXBean for " + method.getName(), e);
+        }
+        for (Reporter reporter : Reporters.ALL) {
+            try {
+                reporter.register(method);
+            } catch (RuntimeException e) {
+                LOG.log(Level.WARNING, reporter + " could not register " + method.getName(), e);
+            }
+        }
+    }
+
+    //loaded when the first method is published, so every method registers with the same reporter instances
+    private static final class Reporters {
+        static final List<Reporter> ALL = load();
+
+        private static List<Reporter> load() {
+            List<Reporter> reporters = new ArrayList<>();
+            try {
+                for (Reporter reporter : ServiceLoader.load(Reporter.class)) {
+                    reporters.add(reporter);
+                }
+            } catch (ServiceConfigurationError e) {
+                LOG.log(Level.WARNING, "could not load MetaMetrics reporters", e);
+            }
+            return Collections.unmodifiableList(reporters);
+        }
+    }
+
+    public static final class Method implements MethodMXBean {
+        //one slot per arity 0-10, and one for everything larger
+        static final int ARITIES = 12;
+
+        private final String name;
+        private final LongAdder[] overloadCalls = adders(ARITIES);
+        private final LongAdder[] invocations = adders(ARITIES);
+        private final LongAdder exceptions = new LongAdder();
+        private final Histogram latency = new Histogram();
+
+        Method(String name) {
+            this.name = name;
+        }
+
+        /** called by generated code, each time the overload for functions of {@code arity} parameters is called */
+        public void overloadCalled(int arity) {
+            overloadCalls[Math.min(arity, ARITIES - 1)].increment();
+        }
+
+        void invoked(int arity, long nanos) {
+            invocations[Math.min(arity, ARITIES - 1)].increment();
+            latency.record(nanos);
+        }
+
+        //a batch is recorded as its calls, each taking the batch's average time
+        void invoked(int arity, int calls, long nanos) {
+            if (calls > 0) {
+                invocations[Math.min(arity, ARITIES - 1)].add(calls);
+                latency.record(nanos / calls, calls);
+            }
+        }
+
+        void failed() {
+            exceptions.increment();
+        }
+
+        public Histogram latency() {
+            return latency;
+        }
+
+        @Override public String getName() {
+            return name;
+        }
+
+        @Override public long[] getOverloadCalls() {
+            return sums(overloadCalls);
+        }
+
+        @Override public long[] getInvocations() {
+            return sums(invocations);
+        }
+
+        @Override public long getExceptions() {
+            return exceptions.sum();
+        }
+
+        @Override public long getLatencyCount() {
+            return latency.count();
+        }
+
+        @Override public long getLatencyMedianNanos() {
+            return latency.percentile(50);
+        }
+
+        @Override public long getLatency99thPercentileNanos() {
+            return latency.percentile(99);
+        }
+
+        @Override public long getLatencyMaxNanos() {
+            return latency.percentile(100);
+        }
+
+        private static LongAdder[] adders(int size) {
+            LongAdder[] adders = new LongAdder[size];
+            for (int i = 0; i < size; i++) {
+                adders[i] = new LongAdder();
+            }
+            return adders;
+        }
+
+        private static long[] sums(LongAdder[] adders) {
+            long[] sums = new long[adders.length];
+            for (int i = 0; i < adders.length; i++) {
+                sums[i] = adders[i].sum();
+            }
+            return sums;
+        }
+    }
+
+    /**
+     * A log-linear histogram of nanosecond latencies, in the style of HdrHistogram: every power of two is
+     * split into {@code 1 << SUB_BUCKET_BITS} linear buckets, so values are kept to within 12.5%.
+     * Recording is one atomic increment, and never allocates.
+     */
+    public static final class Histogram {
+        static final int SUB_BUCKET_BITS = 3;
+        static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+        private final AtomicLongArray counts = new AtomicLongArray((64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS);
+
+        void record(long value) {
+            counts.incrementAndGet(bucket(Math.max(0, value)));
+        }
+
+        void record(long value, long times) {
+            counts.addAndGet(bucket(Math.max(0, value)), times);
+        }
+
+        public long count() {
+            long count = 0;
+            for (int i = 0; i < counts.length(); i++) {
+                count += counts.get(i);
+            }
+            return count;
+        }
+
+        /**
+         * @return the upper bound of the bucket holding the given percentile of recorded values, or 0 if
+         *     nothing has been recorded.
+         */
+        public long percentile(double percentile) {
+            long total = count();
+            if (total == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(total * percentile / 100));
+            long seen = 0;
+            for (int i = 0; i < counts.length(); i++) {
+                seen += counts.get(i);
+                if (seen >= rank) {
+                    return upperBound(i);
+                }
+            }
+            return upperBound(counts.length() - 1);
+        }
+
+        static int bucket(long value) {
+            if (value < SUB_BUCKETS) {
+                return (int) value;
+            }
+            int exponent = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+            int subBucket = (int) (value >>> exponent) & (SUB_BUCKETS - 1);
+            return (exponent + 1) * SUB_BUCKETS + subBucket;
+        }
+
+        static long upperBound(int bucket) {
+            if (bucket < SUB_BUCKETS) {
+                return bucket;
+            }
+            int exponent = bucket / SUB_BUCKETS - 1;
+            long subBucket = bucket % SUB_BUCKETS;
+            return ((SUB_BUCKETS + subBucket + 1) << exponent) - 1;
+        }
+    }
+
+    static final class Instrumented<T> extends MetaFunction<T> {
+        private final MetaFunction<T> function;
+        private final Method method;
+
+        Instrumented(MetaFunction<T> function, Method method) {
+            this.function = function;
+            this.method = method;
+        }
+
+        @Override public int arity() {
+            return function.arity();
+        }
+
+        @Override public T apply(Object... args) {
+            long start = System.nanoTime();
+            try {
+                return function.apply(args);
+            } catch (RuntimeException | Error t) {
+                method.failed();
+                throw t;
+            } finally {
+                method.invoked(args.length, System.nanoTime() - start);
+            }
+        }
+
+        @Override public T apply0() {
+            long start = System.nanoTime();
+            try {
+                return function.apply0();
+            } catch (RuntimeException | Error t) {
+                method.failed();
+                throw t;
+            } finally {
+                method.invoked(0, System.nanoTime() - start);
+            }
+        }
+
+        @Override public T apply1(Object a) {
+            long start = System.nanoTime();
+            try {
+                return function.apply1(a);
+            } catch (RuntimeException | Error t) {
+                method.failed();
+                throw t;
+            } finally {
+                method.invoked(1, System.nanoTime() - start);
+            }
+        }
+
+        @Override public T apply2(Object a, Object b) {
+            long start = System.nanoTime();
+            try {
+                return function.apply2(a, b);
+            } catch (RuntimeException | Error t) {
+                method.failed();
+                throw t;
+            } finally {
+                method.invoked(2, System.nanoTime() - start);
+            }
+        }
+
+        @Override public T apply3(Object a, Object b, Object c) {
+            long start = System.nanoTime();
+            try {
+                return function.apply3(a, b, c);
+            } catch (RuntimeException | Error t) {
+                method.failed();
+                throw t;
+            } finally {
+                method.invoked(3, System.nanoTime() - start);
+            }
+        }
+
+        @Override public T apply4(Object a, Object b, Object c, Object d) {
+            long start = System.nanoTime();
+            try {
+                return function.apply4(a, b, c, d);
+            } catch (RuntimeException | Error t) {
+                method.failed();
+                throw t;
+            } finally {
+                method.invoked(4, System.nanoTime() - start);
+            }
+        }
+
+        @Override public T apply5(Object a, Object b, Object c, Object d, Object e) {
+            long start = System.nanoTime();
+            try {
+                return function.apply5(a, b, c, d, e);
+            } catch (RuntimeException | Error t) {
+                method.failed();
+                throw t;
+            } finally {
+                method.invoked(5, System.nanoTime() - start);
+            }
+        }
+
+        @Override public T apply6(Object a, Object b, Object c, Object d, Object e, Object f) {
+            long start = System.nanoTime();
+            try {
+                return function.apply6(a, b, c, d, e, f);
+            } catch (RuntimeException | Error t) {
+                method.failed();
+                throw t;
+            } finally {
+                method.invoked(6, System.nanoTime() - start);
+            }
+        }
+
+        @Override public T apply7(Object a, Object b, Object c, Object d, Object e, Object f, Object g) {
+            long start = System.nanoTime();
+            try {
+                return function.apply7(a, b, c, d, e, f, g);
+            } catch (RuntimeException | Error t) {
+                method.failed();
+                throw t;
+            } finally {
+                method.invoked(7, System.nanoTime() - start);
+            }
+        }
+
+        @Override public T apply8(Object a, Object b, Object c, Object d, Object e, Object f, Object g, Object h) {
+            long start = System.nanoTime();
+            try {
+                return function.apply8(a, b, c, d, e, f, g, h);
+            } catch (RuntimeException | Error t) {
+                method.failed();
+                throw t;
+            } finally {
+                method.invoked(8, System.nanoTime() - start);
+            }
+        }
+
+        @Override public T apply9(Object a, Object b, Object c, Object d, Object e, Object f, Object g, Object h, Object i) {
+            long start = System.nanoTime();
+            try {
+                return function.apply9(a, b, c, d, e, f, g, h, i);
+            } catch (RuntimeException | Error t) {
+                method.failed();
+                throw t;
+            } finally {
+                method.invoked(9, System.nanoTime() - start);
+            }
+        }
+
+        @Override public T apply10(Object a, Object b, Object c, Object d, Object e, Object f, Object g, Object h, Object i, Object j) {
+            long start = System.nanoTime();
+            try {
+                return function.apply10(a, b, c, d, e, f, g, h, i, j);
+            } catch (RuntimeException | Error t) {
+                method.failed();
+                throw t;
+            } finally {
+                method.invoked(10, System.nanoTime() - start);
+            }
+        }
+
+        //the unboxed entry points and batch loops go straight to the wrapped function's own, as they would without metrics
+        @Override public int applyAsInt(int a) {
+            long start = System.nanoTime();
+            try {
+                return function.applyAsInt(a);
+            } catch (RuntimeException | Error t) {
+                method.failed();
+                throw t;
+            } finally {
+                method.invoked(1, System.nanoTime() - start);
+            }
+        }
+
+        @Override public int applyAsInt(int a, int b) {
+            long start = System.nanoTime();
+            try {
+                return function.applyAsInt(a, b);
+            } catch (RuntimeException | Error t) {
+                method.failed();
+                throw t;
+            } finally {
+                method.invoked(2, System.nanoTime() - start);
+            }
+        }
+
+        @Override public int applyAsInt(int a, int b, int c) {
+            long start = System.nanoTime();
+            try {
+                return function.applyAsInt(a, b, c);
+            } catch (RuntimeException | Error t) {
+                method.failed();
+                throw t;
+            } finally {
+                method.invoked(3, System.nanoTime() - start);
+            }
+        }
+
+        @Override public long applyAsLong(long a) {
+            long start = System.nanoTime();
+            try {
+                return function.applyAsLong(a);
+            } catch (RuntimeException | Error t) {
+                method.failed();
+                throw t;
+            } finally {
+                method.invoked(1, System.nanoTime() - start);
+            }
+        }
+
+        @Override public long applyAsLong(long a, long b) {
+            long start = System.nanoTime();
+            try {
+                return function.applyAsLong(a, b);
+            } catch (RuntimeException | Error t) {
+                method.failed();
+                throw t;
+            } finally {
+                method.invoked(2, System.nanoTime() - start);
+            }
+        }
+
+        @Override public long applyAsLong(long a, long b, long c) {
+            long start = System.nanoTime();
+            try {
+                return function.applyAsLong(a, b, c);
+            } catch (RuntimeException | Error t) {
+                method.failed();
+                throw t;
+            } finally {
+                method.invoked(3, System.nanoTime() - start);
+            }
+        }
+
+        @Override public double applyAsDouble(double a) {
+            long start = System.nanoTime();
+            try {
+                return function.applyAsDouble(a);
+            } catch (RuntimeException | Error t) {
+                method.failed();
+                throw t;
+            } finally {
+                method.invoked(1, System.nanoTime() - start);
+            }
+        }
+
+        @Override public double applyAsDouble(double a, double b) {
+            long start = System.nanoTime();
+            try {
+                return function.applyAsDouble(a, b);
+            } catch (RuntimeException | Error t) {
+                method.failed();
+                throw t;
+            } finally {
+                method.invoked(2, System.nanoTime() - start);
+            }
+        }
+
+        @Override public double applyAsDouble(double a, double b, double c) {
+            long start = System.nanoTime();
+            try {
+                return function.applyAsDouble(a, b, c);
+            } catch (RuntimeException | Error t) {
+                method.failed();
+                throw t;
+            } finally {
+                method.invoked(3, System.nanoTime() - start);
+            }
+        }
+
+        @Override void applyRows(Object[][] rows, Object[] results, int from, int to) {
+            int arity = function.arity();
+            if (arity < 0) {
+                //rows may each have a different length, so they're recorded one call at a time
+                super.applyRows(rows, results, from, to);
+                return;
+            }
+            long start = System.nanoTime();
+            try {
+                function.applyRows(rows, results, from, to);
+            } catch (RuntimeException | Error t) {
+                method.failed();
+                throw t;
+            } finally {
+                method.invoked(arity, to - from, System.nanoTime() - start);
+            }
+        }
+
+        @Override void applyColumns(Object[][] columns, Object[] results, int from, int to) {
+            long start = System.nanoTime();
+            try {
+                function.applyColumns(columns, results, from, to);
+            } catch (RuntimeException | Error t) {
+                method.failed();
+                throw t;
+            } finally {
+                method.invoked(columns.length, to - from, System.nanoTime() - start);
+            }
+        }
+    }
+}
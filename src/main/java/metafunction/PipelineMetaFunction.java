@@ -0,0 +1,115 @@
+package metafunction;
+
+import java.util.Arrays;
+import java.util.functions.Mapper;
+import java.util.functions.Predicate;
+
+/**
+ * A chain of MetaFunction combinators, flattened into a single adapter: argument stages (guards, bound
+ * arguments and composed functions, outermost first), one target function, then result mappers. Adding a
+ * combinator copies the stage arrays instead of wrapping another MetaFunction around this one, so a call
+ * through a pipeline of any length is one loop over its stages and one call to the target.
+ *
+ * Calls still go through {@code apply(Object...)}, and each bound or composed stage builds a new argument array.
+ */
+final class PipelineMetaFunction<T> extends MetaFunction<T> {
+    static final int GUARD = 0;
+    static final int BIND = 1;
+    static final int COMPOSE = 2;
+
+    private static final Stage[] NO_STAGES = {};
+    private static final Mapper<?, ?>[] NO_MAPPERS = {};
+
+    private final Stage[] stages;
+    private final MetaFunction<?> target;
+    private final Mapper<Object, Object>[] mappers;
+    private final int arity;
+
+    @SuppressWarnings("unchecked")
+    private PipelineMetaFunction(Stage[] stages, MetaFunction<?> target, Mapper<?, ?>[] mappers) {
+        this.stages = stages;
+        this.target = target;
+        this.mappers = (Mapper<Object, Object>[]) mappers;
+        int arity = target.arity();
+        for (int i = stages.length - 1; i >= 0; i--) {
+            Stage stage = stages[i];
+            if (stage.kind == BIND) {
+                arity = arity < 0 ? -1 : Math.max(0, arity - stage.bound.length);
+            } else if (stage.kind == COMPOSE) {
+                arity = stage.function.arity();
+            }
+        }
+        this.arity = arity;
+    }
+
+    @SuppressWarnings("unchecked")
+    static <T> PipelineMetaFunction<T> of(MetaFunction<T> function) {
+        return function instanceof PipelineMetaFunction
+                ? (PipelineMetaFunction<T>) function
+                : new PipelineMetaFunction<T>(NO_STAGES, function, NO_MAPPERS);
+    }
+
+    <V> PipelineMetaFunction<V> withMapper(Mapper<V, ? super T> mapper) {
+        Mapper<?, ?>[] mappers = Arrays.copyOf(this.mappers, this.mappers.length + 1);
+        mappers[this.mappers.length] = mapper;
+        return new PipelineMetaFunction<V>(stages, target, mappers);
+    }
+
+    PipelineMetaFunction<T> withStage(int kind, Predicate<Object[]> guard, Object[] bound, MetaFunction<?> function) {
+        Stage stage = new Stage(kind, guard, bound, function, mappers.length);
+        Stage[] stages = new Stage[this.stages.length + 1];
+        stages[0] = stage;
+        System.arraycopy(this.stages, 0, stages, 1, this.stages.length);
+        return new PipelineMetaFunction<T>(stages, target, mappers);
+    }
+
+    @Override public int arity() {
+        return arity;
+    }
+
+    @Override public T apply(Object... args) {
+        for (Stage stage : stages) {
+            switch (stage.kind) {
+                case GUARD:
+                    if (!stage.guard.test(args)) {
+                        //the fallback replaces everything up to the guard, so only the mappers added after it apply
+                        return map(stage.function.apply(args), stage.mappers);
+                    }
+                    break;
+                case BIND:
+                    Object[] bound = Arrays.copyOf(stage.bound, stage.bound.length + args.length);
+                    System.arraycopy(args, 0, bound, stage.bound.length, args.length);
+                    args = bound;
+                    break;
+                default:
+                    args = new Object[]{stage.function.apply(args)};
+            }
+        }
+        return map(target.apply(args), 0);
+    }
+
+    @SuppressWarnings("unchecked")
+    private T map(Object result, int from) {
+        for (int i = from; i < mappers.length; i++) {
+            result = mappers[i].map(result);
+        }
+        return (T) result;
+    }
+
+    static final class Stage {
+        final int kind;
+        final Predicate<Object[]> guard;
+        final Object[] bound;
+        final MetaFunction<?> function;
+        //how many mappers the pipeline had when this stage was added
+        final int mappers;
+
+        Stage(int kind, Predicate<Object[]> guard, Object[] bound, MetaFunction<?> function, int mappers) {
+            this.kind = kind;
+            this.guard = guard;
+            this.bound = bound;
+            this.function = function;
+            this.mappers = mappers;
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package metafunction;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a {@code @MetaMethod} which registers a handler under a String key, e.g.
+ * {@code @Route({"users", "orders"}) @MetaMethod Router route(String path, MetaFunction<Object> handler)}.
+ * For the keys listed here, the generated class keeps the handlers registered through its overloads in slots
+ * picked by a string switch, and generates {@code dispatch(key, a, b...)} methods that call the handler for
+ * their arity directly. A key holds one handler: registering it again replaces the handler, even one of another
+ * arity. Other keys are only passed on to the annotated method.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface Route {
+    /** the keys known at compile time */
+    String[] value();
+
+    /** the name of the generated dispatch methods; classes with several routed methods need a different one for each */
+    String dispatcher() default "dispatch";
+}
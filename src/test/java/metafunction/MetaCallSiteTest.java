@@ -0,0 +1,116 @@
+package metafunction;
+
+import org.junit.Test;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class MetaCallSiteTest {
+
+    static final MetaFunction<Object> CONCAT = new MetaFunction.Arity2<String, String, Object>((a, b) -> a + b);
+    static final MetaFunction<Object> UPPER = new MetaFunction.Arity1<String, Object>(a -> a.toUpperCase());
+    static final MetaFunction<Object> COUNT = MetaFunction.of(args -> args.length);
+
+    @Test public void testSpecializesForFewReceivers() {
+        MetaCallSite<Object> site = new MetaCallSite<>(10);
+        for (int i = 0; i < 5; i++) {
+            assertThat(site.apply(CONCAT, "a", "b")).isEqualTo("ab");
+            assertThat(site.apply(UPPER, "a")).isEqualTo("A");
+        }
+        assertThat(site.tier()).isEqualTo(MetaCallSite.Tier.SPECIALIZED);
+        assertThat(site.calls()).isEqualTo(10L);
+        assertThat(site.arityCounts()[1]).isEqualTo(5L);
+        assertThat(site.arityCounts()[2]).isEqualTo(5L);
+        assertThat(site.receiverCounts()).hasSize(2);
+
+        assertThat(site.apply(CONCAT, "c", "d")).isEqualTo("cd");
+        assertThat(site.apply(UPPER, "c")).isEqualTo("C");
+        assertThat(site.tier()).isEqualTo(MetaCallSite.Tier.SPECIALIZED);
+        assertThat(site.specializations()).isEqualTo(1L);
+    }
+
+    @Test public void testDeoptimizesWhenProfileChanges() {
+        MetaCallSite<Object> site = new MetaCallSite<>(10);
+        for (int i = 0; i < 10; i++) {
+            site.apply(CONCAT, "a", "b");
+        }
+        assertThat(site.tier()).isEqualTo(MetaCallSite.Tier.SPECIALIZED);
+
+        assertThat(site.apply(COUNT, 1, 2, 3)).isEqualTo(3);
+        assertThat(site.tier()).isEqualTo(MetaCallSite.Tier.PROFILING);
+        assertThat(site.deoptimizations()).isEqualTo(1L);
+        assertThat(site.calls()).isEqualTo(0L);
+
+        //the same function with another number of arguments doesn't match its specialization either
+        for (int i = 0; i < 10; i++) {
+            site.apply(CONCAT, "a", "b");
+        }
+        assertThat(site.apply(CONCAT, "a", "b", "c")).isEqualTo("ab");
+        assertThat(site.tier()).isEqualTo(MetaCallSite.Tier.PROFILING);
+        assertThat(site.deoptimizations()).isEqualTo(2L);
+    }
+
+    @Test public void testStaysMegamorphicForManyReceivers() {
+        MetaCallSite<Object> site = new MetaCallSite<>(10);
+        //each lambda expression is a class of its own
+        MetaFunction<?>[] functions = {
+                CONCAT, UPPER, COUNT,
+                new MetaFunction.Arity0<Object>(() -> "x"),
+                new MetaFunction.Arity0<Object>(() -> "y")};
+        for (int i = 0; i < 10; i++) {
+            site.apply(functions[i % functions.length], "a", "b");
+        }
+        assertThat(site.tier()).isEqualTo(MetaCallSite.Tier.MEGAMORPHIC);
+        assertThat(site.receiverCounts()).hasSize(5);
+        assertThat(site.apply(CONCAT, "a", "b")).isEqualTo("ab");
+    }
+
+    @Test public void testSpecializesForHottestOfManyReceivers() {
+        MetaCallSite<Object> site = new MetaCallSite<>(50);
+        MetaFunction<?>[] rare = {
+                UPPER, COUNT,
+                new MetaFunction.Arity0<Object>(() -> "x"),
+                new MetaFunction.Arity0<Object>(() -> "y")};
+        for (MetaFunction<?> function : rare) {
+            site.apply(function, "a");
+        }
+        for (int i = 0; i < 46; i++) {
+            site.apply(CONCAT, "a", "b");
+        }
+        assertThat(site.tier()).isEqualTo(MetaCallSite.Tier.SPECIALIZED);
+
+        //whichever rare function was left out of the cases falls back to apply without deoptimizing
+        for (MetaFunction<?> function : rare) {
+            site.apply(function, "a");
+        }
+        assertThat(site.apply(CONCAT, "c", "d")).isEqualTo("cd");
+        assertThat(site.tier()).isEqualTo(MetaCallSite.Tier.SPECIALIZED);
+        assertThat(site.deoptimizations()).isEqualTo(0L);
+    }
+
+    static class Both implements Functions.F1<String, Object>, Functions.F2<String, String, Object> {
+        @Override public Object apply(String a) {
+            return a.toUpperCase();
+        }
+
+        @Override public Object apply(String a, String b) {
+            return a + b;
+        }
+    }
+
+    @Test public void testSpecializesForEachWrapperOfAFunction() {
+        MetaCallSite<Object> site = new MetaCallSite<>(10);
+        Both both = new Both();
+        MetaFunction<Object> one = MetaAdapters.of1(both);
+        MetaFunction<Object> two = MetaAdapters.of2(both);
+        for (int i = 0; i < 5; i++) {
+            site.apply(one, "a");
+            site.apply(two, "a", "b");
+        }
+        assertThat(site.tier()).isEqualTo(MetaCallSite.Tier.SPECIALIZED);
+        assertThat(site.receiverCounts()).hasSize(1);
+
+        assertThat(site.apply(one, "c")).isEqualTo("C");
+        assertThat(site.apply(two, "c", "d")).isEqualTo("cd");
+        assertThat(site.deoptimizations()).isEqualTo(0L);
+    }
+}
@@ -0,0 +1,138 @@
+package metafunction;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import org.junit.Test;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class MetaFunctionProcessorTest {
+
+    /** publishes (i, 1) for i in [0, count), tracking how far ahead of delivery it was asked for */
+    static class Tuples implements Publisher<Object[]> {
+        final int count;
+        long requested;
+        int sent;
+        long maxOutstanding;
+
+        Tuples(int count) {
+            this.count = count;
+        }
+
+        @Override public void subscribe(Subscriber<? super Object[]> s) {
+            s.onSubscribe(new Subscription() {
+                boolean emitting;
+
+                @Override public synchronized void request(long n) {
+                    requested += n;
+                    maxOutstanding = Math.max(maxOutstanding, requested - sent);
+                    if (emitting) {
+                        return;
+                    }
+                    emitting = true;
+                    while (sent < requested && sent < count) {
+                        s.onNext(new Object[]{sent++, 1});
+                    }
+                    emitting = false;
+                    if (sent == count) {
+                        s.onComplete();
+                    }
+                }
+
+                @Override public void cancel() {
+                }
+            });
+        }
+    }
+
+    /** requests a few results at a time */
+    static class Results implements Subscriber<Object> {
+        static final int CHUNK = 7;
+        final List<Object> received = Collections.synchronizedList(Lists.newArrayList());
+        final CountDownLatch done = new CountDownLatch(1);
+        volatile Throwable error;
+        Subscription subscription;
+
+        @Override public void onSubscribe(Subscription s) {
+            subscription = s;
+            s.request(CHUNK);
+        }
+
+        @Override public void onNext(Object result) {
+            received.add(result);
+            if (received.size() % CHUNK == 0) {
+                subscription.request(CHUNK);
+            }
+        }
+
+        @Override public void onError(Throwable t) {
+            error = t;
+            done.countDown();
+        }
+
+        @Override public void onComplete() {
+            done.countDown();
+        }
+    }
+
+    static final MetaFunction<Object> ADD = new MetaFunction.Arity2<Integer, Integer, Object>((a, b) -> a + b);
+
+    @Test public void testOrderedResultsWithBoundedDemand() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        Tuples tuples = new Tuples(1000);
+        Results results = new Results();
+        MetaFunctionProcessor<Object> processor = ADD.processor(executor, 4, 16, true);
+        processor.subscribe(results);
+        tuples.subscribe(processor);
+
+        assertThat(results.done.await(10, TimeUnit.SECONDS)).isTrue();
+        executor.shutdown();
+        assertThat(results.error).isNull();
+        assertThat(results.received).hasSize(1000);
+        for (int i = 0; i < 1000; i++) {
+            assertThat(results.received.get(i)).isEqualTo(i + 1);
+        }
+        assertThat(tuples.maxOutstanding).isLessThanOrEqualTo(4 * 16);
+    }
+
+    @Test public void testUnorderedResults() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        Tuples tuples = new Tuples(1000);
+        Results results = new Results();
+        MetaFunctionProcessor<Object> processor = ADD.processor(executor, 4, 16, false);
+        processor.subscribe(results);
+        tuples.subscribe(processor);
+
+        assertThat(results.done.await(10, TimeUnit.SECONDS)).isTrue();
+        executor.shutdown();
+        assertThat(Sets.newHashSet(results.received)).hasSize(1000);
+    }
+
+    @Test public void testFailureEndsTheStream() throws Exception {
+        MetaFunction<Object> failAt50 = MetaFunction.of(args -> {
+            if ((Integer) args[0] == 50) {
+                throw new IllegalStateException("boom");
+            }
+            return args[0];
+        });
+        Tuples tuples = new Tuples(100);
+        Results results = new Results();
+        MetaFunctionProcessor<Object> processor = failAt50.processor(Runnable::run, 2, 10, true);
+        processor.subscribe(results);
+        tuples.subscribe(processor);
+
+        assertThat(results.done.await(10, TimeUnit.SECONDS)).isTrue();
+        assertThat(results.error).isInstanceOf(IllegalStateException.class);
+        assertThat(results.received).hasSize(50);
+    }
+}
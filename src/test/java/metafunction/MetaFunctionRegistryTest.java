@@ -0,0 +1,61 @@
+package metafunction;
+
+import org.junit.Test;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class MetaFunctionRegistryTest {
+
+    static class Router extends Router_MetaFunction<Object> {
+        final MetaFunctionRegistry<String, Object> routes = new MetaFunctionRegistry<>();
+
+        @MetaMethod Router route(String path, MetaFunction<Object> handler) {
+            routes.register(path, handler);
+            return this;
+        }
+    }
+
+    @Test public void testHandlerIsChosenByArity() {
+        Router router = new Router()
+                .route("name", () -> "Hello")
+                .route("name", (String name) -> "Hello, " + name)
+                .route("name", (String first, String last) -> "Hello, " + first + " " + last);
+
+        assertThat(router.routes.apply("name")).isEqualTo("Hello");
+        assertThat(router.routes.apply("name", "Sam")).isEqualTo("Hello, Sam");
+        assertThat(router.routes.apply("name", "Sam", "Beran")).isEqualTo("Hello, Sam Beran");
+        assertThat(router.routes.get("name", 3)).isNull();
+    }
+
+    @Test public void testVarArgsHandlerIsFallback() {
+        Router router = new Router()
+                .route("count", MetaFunction.of(args -> args.length))
+                .route("count", () -> "none");
+
+        assertThat(router.routes.apply("count")).isEqualTo("none");
+        assertThat(router.routes.apply("count", 1, 2, 3)).isEqualTo(3);
+    }
+
+    @Test public void testRegisterReplacesSameArity() {
+        Router router = new Router()
+                .route("foo", () -> "bar")
+                .route("foo", () -> "baz");
+
+        assertThat(router.routes.apply("foo")).isEqualTo("baz");
+    }
+
+    @Test public void testReplaceAllSwapsEveryHandler() {
+        Router router = new Router().route("foo", () -> "bar");
+        Router reloaded = new Router().route("baz", () -> "qux");
+
+        router.routes.replaceAll(reloaded.routes);
+
+        assertThat(router.routes.contains("foo")).isFalse();
+        assertThat(router.routes.apply("baz")).isEqualTo("qux");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMissingHandler() {
+        new Router().routes.apply("missing");
+    }
+}
@@ -1,5 +1,6 @@
 package metafunction;
 
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import org.junit.Assert;
 import org.junit.Test;
@@ -7,6 +8,10 @@ import org.junit.Test;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static java.util.Arrays.asList;
 import static org.fest.assertions.Assertions.assertThat;
@@ -152,8 +157,521 @@ public class MetaFunctionTest {
     }
 
 
+    @Test public void testFixedArityEntryPoints() {
+        FunctionApplier fn = new FunctionApplier();
+
+        fn.when((String a, String b) -> a + b);
+        Assert.assertEquals("ab", fn.function.apply2("a", "b"));
+        Assert.assertEquals("ab", fn.function.apply("a", "b"));
+
+        MetaFunction<Object> mapped = MetaFunction.of(args -> args.length);
+        Assert.assertEquals(2, mapped.apply2("a", "b"));
+    }
+
+    static class NumericApplier extends NumericApplier_MetaFunction<Object> {
+        MetaFunction<Object> function;
+
+        @MetaMethod(primitives = true) void when(MetaFunction<Object> function) {
+            this.function = function;
+        }
+    }
+
+    @Test public void testPrimitiveFunctionsAreNotBoxed() {
+        NumericApplier fn = new NumericApplier();
+
+        fn.when((long a, long b) -> a + b);
+        Assert.assertEquals(5L, fn.function.applyAsLong(2, 3));
+        Assert.assertEquals(5L, fn.function.apply(2L, 3L));
+
+        fn.when((double d) -> d / 2);
+        Assert.assertEquals(1.5, fn.function.applyAsDouble(3), 0);
+    }
+
+    static class LongApplier extends LongApplier_MetaFunction<Long> {
+        MetaFunction<Long> function;
+
+        @MetaMethod(primitives = true, maxArity = 1) void when(MetaFunction<Long> function) {
+            this.function = function;
+        }
+    }
+
+    @Test public void testPrimitiveOverloadsOnlyForResultsTheMethodCanHold() {
+        LongApplier fn = new LongApplier();
+        fn.when((long a) -> a + 1);
+        Assert.assertEquals(Long.valueOf(3), fn.function.apply(2L));
+
+        List<Class<?>> parameterTypes = Lists.newArrayList();
+        for (java.lang.reflect.Method method : LongApplier_MetaFunction.class.getDeclaredMethods()) {
+            parameterTypes.add(method.getParameterTypes()[0]);
+        }
+        assertThat(parameterTypes.contains(Functions.LongF1.class)).isTrue();
+        assertThat(parameterTypes.contains(Functions.IntF1.class)).isFalse();
+        assertThat(parameterTypes.contains(Functions.DoubleF1.class)).isFalse();
+    }
+
+    static class HandleApplier extends HandleApplier_MetaFunction<Object> {
+        MetaFunction<Object> function;
+
+        @MetaMethod(engine = MetaMethod.Engine.METHOD_HANDLE) void when(MetaFunction<Object> function) {
+            this.function = function;
+        }
+    }
+
+    @Test public void testMethodHandleEngine() {
+        HandleApplier fn = new HandleApplier();
+
+        fn.when(() -> "yo");
+        Assert.assertEquals("yo", fn.function.apply());
+
+        fn.when((String a, String b) -> a + b);
+        Assert.assertEquals("ab", fn.function.apply("a", "b"));
+        Assert.assertEquals("ab", fn.function.apply2("a", "b"));
+        //extra arguments are ignored, as they are by the default engine
+        Assert.assertEquals("ab", fn.function.apply("a", "b", "c"));
+    }
+
+    static class WideApplier extends WideApplier_MetaFunction<Object> {
+        MetaFunction<Object> function;
+
+        @MetaMethod(minArity = 2, maxArity = 12) void when(MetaFunction<Object> function) {
+            this.function = function;
+        }
+    }
+
+    @Test public void testConfiguredArityRange() {
+        WideApplier fn = new WideApplier();
+
+        fn.when((String a, String b) -> a + b);
+        Assert.assertEquals("ab", fn.function.apply("a", "b"));
+
+        fn.when((String a, String b, String c, String d, String e, String f, String g, String h, String i, String j, String k, String l) ->
+                a + l);
+        Assert.assertEquals("al", fn.function.apply("a", "b", "c", "d", "e", "f", "g", "h", "i", "j", "k", "l"));
+    }
+
+    @Test public void testBatchApply() {
+        FunctionApplier fn = new FunctionApplier();
+        fn.when((String a, String b) -> a + b);
+
+        assertThat(fn.function.applyBatch(asList(new Object[]{"a", "b"}, new Object[]{"c", "d"})))
+                .isEqualTo(asList("ab", "cd"));
+
+        Object[] firsts = new Object[1000];
+        Object[] seconds = new Object[1000];
+        List<Object[]> rows = Lists.newArrayList();
+        for (int i = 0; i < firsts.length; i++) {
+            firsts[i] = "a" + i;
+            seconds[i] = "b" + i;
+            rows.add(new Object[]{firsts[i], seconds[i]});
+        }
+        Object[] results = new Object[firsts.length];
+        fn.function.applyBatchParallel(new Object[][]{firsts, seconds}, results);
+        assertThat(results[999]).isEqualTo("a999b999");
+        assertThat(fn.function.applyBatchParallel(rows)).isEqualTo(asList(results));
+    }
+
+    @Test public void testColumnarBatchArities() {
+        Object[] as = {"a", "b", "c"};
+        Object[] bs = {"1", "2", "3"};
+        Object[] cs = {"x", "y", "z"};
+        Object[] results = new Object[3];
+
+        new MetaFunction.Arity0<Object>(() -> "-").applyBatch(new Object[0][], results);
+        assertThat(asList(results)).isEqualTo(asList("-", "-", "-"));
+        new MetaFunction.Arity1<String, Object>(a -> a + "!").applyBatch(new Object[][]{as}, results);
+        assertThat(asList(results)).isEqualTo(asList("a!", "b!", "c!"));
+        new MetaFunction.Arity3<String, String, String, Object>((a, b, c) -> a + b + c).applyBatch(new Object[][]{as, bs, cs}, results);
+        assertThat(asList(results)).isEqualTo(asList("a1x", "b2y", "c3z"));
+
+        //functions without a batch loop of their own take the generic one
+        MetaFunction<Object> varargs = MetaFunction.of(args -> args.length + ":" + args[args.length - 1]);
+        varargs.applyBatchParallel(new Object[][]{as, bs, cs}, results);
+        assertThat(asList(results)).isEqualTo(asList("3:x", "3:y", "3:z"));
+        MetaFunction.memoized(new MetaFunction.Arity2<String, String, Object>((a, b) -> a + b), 10)
+                .applyBatch(new Object[][]{as, bs}, results);
+        assertThat(asList(results)).isEqualTo(asList("a1", "b2", "c3"));
+
+        try {
+            new MetaFunction.Arity2<String, String, Object>((a, b) -> a + b).applyBatch(new Object[][]{as, bs, cs}, results);
+            Assert.fail();
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    static class AsyncFetcher extends AsyncFetcher_MetaFunction<String> {
+        @MetaMethod(async = true) String fetch(MetaFunction<String> handler, Object... args) {
+            return handler.apply(args);
+        }
+    }
+
+    @Test public void testAsyncOverloads() throws Exception {
+        AsyncFetcher fetcher = new AsyncFetcher();
+
+        assertThat(fetcher.fetchAsync((String a, String b) -> a + b, "a", "b").get()).isEqualTo("ab");
+        assertThat(MetaFunction.of(args -> "yo").applyAsync().get()).isEqualTo("yo");
+
+        //an Executor argument is just an argument; only applyAsyncOn takes one to run on
+        Executor executor = Runnable::run;
+        MetaFunction<Object> first = MetaFunction.of(args -> args[0]);
+        Assert.assertSame(executor, first.applyAsync(executor).get());
+
+        List<Runnable> queued = Lists.newArrayList();
+        Object[] args = {"a"};
+        CompletableFuture<Object> later = first.applyAsyncOn(queued::add, args);
+        args[0] = "b";
+        queued.get(0).run();
+        assertThat(later.get()).isEqualTo("a");
+    }
+
+    static class MemoizingApplier extends MemoizingApplier_MetaFunction<Object> {
+        MetaFunction<Object> function;
+
+        @MetaMethod(memoize = 100) void when(MetaFunction<Object> function) {
+            this.function = function;
+        }
+    }
+
+    @Test public void testMemoizedFunctionIsCalledOncePerArguments() {
+        MemoizingApplier fn = new MemoizingApplier();
+        List<String> calls = Lists.newArrayList();
+        fn.when((String a, String b) -> {
+            calls.add(a + b);
+            return a + b;
+        });
+
+        assertThat(fn.function.apply("a", "b")).isEqualTo("ab");
+        assertThat(fn.function.apply2("a", "b")).isEqualTo("ab");
+        assertThat(fn.function.apply("b", "a")).isEqualTo("ba");
+
+        assertThat(calls).isEqualTo(asList("ab", "ba"));
+        assertThat(((MemoizedMetaFunction<Object>) fn.function).stats().hitCount()).isEqualTo(1);
+    }
+
+    @Test public void testMemoizedKeysDontShareTheCallersArray() {
+        MemoizingApplier fn = new MemoizingApplier();
+        fn.when((String a, String b, String c, String d) -> a + b + c + d);
+
+        Object[] args = {"a", "b", "c", "d"};
+        assertThat(fn.function.apply(args)).isEqualTo("abcd");
+        args[3] = "e";
+        assertThat(fn.function.apply(args)).isEqualTo("abce");
+        assertThat(fn.function.apply("a", "b", "c", "d")).isEqualTo("abcd");
+    }
+
+    static class InstrumentedApplier extends InstrumentedApplier_MetaFunction<Object> {
+        MetaFunction<Object> function;
+
+        @MetaMethod(instrument = true) void when(MetaFunction<Object> function) {
+            this.function = function;
+        }
+    }
+
+    @Test public void testInstrumentedMethodRecordsMetrics() {
+        InstrumentedApplier fn = new InstrumentedApplier();
+        MetaMetrics.Method metrics = MetaMetrics.method("metafunction.MetaFunctionTest.InstrumentedApplier", "when");
+
+        fn.when((String a, String b) -> a + b);
+        fn.function.apply("a", "b");
+        fn.function.apply2("a", "b");
+        fn.when((String a) -> {
+            throw new IllegalStateException(a);
+        });
+        try {
+            fn.function.apply("a");
+            Assert.fail();
+        } catch (IllegalStateException expected) {
+        }
+
+        assertThat(metrics.getOverloadCalls()[1]).isEqualTo(1);
+        assertThat(metrics.getOverloadCalls()[2]).isEqualTo(1);
+        assertThat(metrics.getInvocations()[2]).isEqualTo(2);
+        assertThat(metrics.getExceptions()).isEqualTo(1);
+        assertThat(metrics.getLatencyCount()).isEqualTo(3);
+    }
+
+    //registered in src/test/resources/META-INF/services
+    public static class CountingReporter implements MetaMetrics.Reporter {
+        static final AtomicInteger INSTANCES = new AtomicInteger();
+        static final List<String> REGISTERED = new CopyOnWriteArrayList<>();
+
+        public CountingReporter() {
+            INSTANCES.incrementAndGet();
+        }
+
+        @Override public void register(MetaMetrics.Method method) {
+            REGISTERED.add(method.getName());
+        }
+    }
+
+    @Test public void testReportersAreSharedByMethods() {
+        MetaMetrics.method("metafunction.MetaFunctionTest", "reportedFirst");
+        MetaMetrics.method("metafunction.MetaFunctionTest", "reportedSecond");
+
+        assertThat(CountingReporter.INSTANCES.get()).isEqualTo(1);
+        assertThat(CountingReporter.REGISTERED.contains("metafunction.MetaFunctionTest#reportedFirst")).isTrue();
+        assertThat(CountingReporter.REGISTERED.contains("metafunction.MetaFunctionTest#reportedSecond")).isTrue();
+    }
+
+    @Test public void testInstrumentedFunctionsKeepUnboxedAndBatchPaths() {
+        MetaMetrics.Method metrics = MetaMetrics.method("metafunction.MetaFunctionTest", "unboxed");
+        MetaFunction<Integer> increment = MetaMetrics.instrument(new MetaFunction<Integer>() {
+            @Override public Integer apply(Object... args) {
+                throw new UnsupportedOperationException("boxed");
+            }
+
+            @Override public int applyAsInt(int a) {
+                return a + 1;
+            }
+        }, metrics);
+        assertThat(increment.applyAsInt(2)).isEqualTo(3);
+        assertThat(metrics.getInvocations()[1]).isEqualTo(1);
+
+        MetaFunction<Object> concat = MetaMetrics.instrument(MetaAdapters.of2((String a, String b) -> a + b), metrics);
+        Object[] results = new Object[3];
+        concat.applyBatch(new Object[][]{{"a", "b", "c"}, {"1", "2", "3"}}, results);
+        assertThat(asList(results)).isEqualTo(asList("a1", "b2", "c3"));
+        assertThat(metrics.getInvocations()[2]).isEqualTo(3);
+        assertThat(metrics.getLatencyCount()).isEqualTo(4);
+    }
+
+    @Test public void testCombinatorsFlattenIntoOneFunction() {
+        FunctionApplier fn = new FunctionApplier();
+        fn.when((String a, String b) -> a + b);
+
+        MetaFunction<Object> pipeline = fn.function.partial("x")
+                .filter(args -> args[0] != null, MetaFunction.of(args -> "none"))
+                .andThen(result -> result + "!");
+        Assert.assertEquals("xy!", pipeline.apply("y"));
+        Assert.assertEquals("none!", pipeline.apply((Object) null));
+        Assert.assertEquals(1, pipeline.arity());
+        Assert.assertSame(PipelineMetaFunction.class, pipeline.getClass());
+
+        //mappers added before a guard don't see its fallback's result
+        MetaFunction<String> guarded = fn.function.partial("x")
+                .andThen(result -> result + "?")
+                .filter(args -> args[0] != null, MetaFunction.of(args -> "none"));
+        Assert.assertEquals("xy?", guarded.apply("y"));
+        Assert.assertEquals("none", guarded.apply((Object) null));
+
+        MetaFunction<Object> composed = fn.function.partial("<")
+                .compose(MetaFunction.of(args -> String.valueOf(args.length)));
+        Assert.assertEquals("<3", composed.apply("a", "b", "c"));
+    }
+
+    @Test public void testAdaptFunctionAtRuntime() {
+        Functions.F2<String, String, String> concat = (a, b) -> a + b;
+        MetaFunction<String> adapted = MetaFunction.adapt(concat);
+        Assert.assertEquals("ab", adapted.apply("a", "b"));
+        Assert.assertEquals(2, adapted.arity());
+
+        Functions.IntF1 increment = a -> a + 1;
+        Assert.assertEquals(3, MetaFunction.adapt(increment).applyAsInt(2));
+    }
+
+    static class IntSumAndIdentity implements Functions.IntF3, Functions.F1<Integer, Integer> {
+        @Override public int apply(int a, int b, int c) {
+            return a + b + c;
+        }
+
+        @Override public Integer apply(Integer a) {
+            return a;
+        }
+    }
+
+    static class Wide implements WideApplier_MetaFunction.F12<String, String, String, String, String, String, String, String, String, String, String, String, String>,
+            WideApplier_MetaFunction.F11<String, String, String, String, String, String, String, String, String, String, String, String> {
+        @Override public String apply(String a, String b, String c, String d, String e, String f, String g, String h, String i, String j, String k, String l) {
+            return "12";
+        }
+
+        @Override public String apply(String a, String b, String c, String d, String e, String f, String g, String h, String i, String j, String k) {
+            return "11";
+        }
+    }
+
+    @Test public void testAdaptNarrowestInterface() {
+        MetaFunction<Integer> adapted = MetaFunction.adapt(new IntSumAndIdentity());
+        Assert.assertEquals(1, adapted.arity());
+        Assert.assertEquals(Integer.valueOf(7), adapted.apply(7));
+
+        MetaFunction<String> wide = MetaFunction.adapt(new Wide());
+        Assert.assertEquals(11, wide.arity());
+        Assert.assertEquals("11", wide.apply("a", "b", "c", "d", "e", "f", "g", "h", "i", "j", "k"));
+    }
+
+    static class ReusingApplier extends ReusingApplier_MetaFunction<Object> {
+        MetaFunction<Object> function;
+
+        @MetaMethod(reuse = true) void when(MetaFunction<Object> function) {
+            this.function = function;
+        }
+    }
+
+    @Test public void testReusedAdapters() {
+        ReusingApplier fn = new ReusingApplier();
+        List<MetaFunction<Object>> registered = Lists.newArrayList();
+        for (int i = 0; i < 2; i++) {
+            fn.when((String a, String b) -> a + b);
+            registered.add(fn.function);
+        }
+        Assert.assertSame(registered.get(0), registered.get(1));
+        Assert.assertEquals("ab", fn.function.apply("a", "b"));
+
+        String suffix = "!";
+        fn.when((String a) -> a + suffix);
+        MetaFunction<Object> capturing = fn.function;
+        fn.when((String a) -> a + suffix);
+        Assert.assertNotSame(capturing, fn.function);
+    }
+
+    static class RoutedExample extends RoutedExample_MetaFunction<Object> {
+        final Map<String, MetaFunction<Object>> handlers = Maps.newHashMap();
+
+        @Route({"foo", "name"}) @MetaMethod(maxArity = 12) RoutedExample route(String path, MetaFunction<Object> handler) {
+            handlers.put(path, handler);
+            return this;
+        }
+    }
+
+    @Test public void testCompileTimeRoutes() {
+        RoutedExample router = new RoutedExample();
+        router.route("foo", () -> "bar")
+              .route("name", (String name) -> "Hello, " + name)
+              .route("other", () -> "baz");
+
+        assertThat(router.dispatch("foo")).isEqualTo("bar");
+        assertThat(router.dispatch("name", "Sam")).isEqualTo("Hello, Sam");
+        assertThat(router.handlers.get("other").apply()).isEqualTo("baz");
+        try {
+            router.dispatch("other");
+            Assert.fail();
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    @Test public void testRegisteringARouteAgainReplacesIt() {
+        RoutedExample router = new RoutedExample();
+        router.route("foo", () -> "bar")
+              .route("foo", (String name) -> "Hello, " + name);
+
+        assertThat(router.dispatch("foo", "Sam")).isEqualTo("Hello, Sam");
+        try {
+            router.dispatch("foo");
+            Assert.fail();
+        } catch (IllegalArgumentException expected) {
+        }
+
+        router.route("foo", (String a, String b, String c, String d, String e, String f, String g, String h, String i, String j, String k, String l) ->
+                a + l);
+        try {
+            router.dispatch("foo", "Sam");
+            Assert.fail();
+        } catch (IllegalArgumentException expected) {
+        }
+        router.route("foo", () -> "bar");
+        assertThat(router.dispatch("foo")).isEqualTo("bar");
+        try {
+            router.dispatch("foo", "a", "b", "c", "d", "e", "f", "g", "h", "i", "j", "k", "l");
+            Assert.fail();
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    @Test public void testCompileTimeRoutesAboveLibraryArity() {
+        RoutedExample router = new RoutedExample();
+        router.route("foo", (String a, String b, String c, String d, String e, String f, String g, String h, String i, String j, String k, String l) ->
+                a + l);
+
+        assertThat(router.dispatch("foo", "a", "b", "c", "d", "e", "f", "g", "h", "i", "j", "k", "l")).isEqualTo("al");
+        //the wide handler sits in the any-arity slot, which mustn't take calls of other arities
+        try {
+            router.dispatch("foo", "a");
+            Assert.fail();
+        } catch (IllegalArgumentException expected) {
+        }
+        try {
+            router.dispatch("foo", "a", "b", "c", "d", "e", "f", "g", "h", "i", "j", "k");
+            Assert.fail();
+        } catch (IllegalArgumentException expected) {
+        }
+
+        ArgFrame frame = ArgFrame.current();
+        for (String arg : asList("a", "b", "c", "d", "e", "f", "g", "h", "i", "j", "k", "l")) {
+            frame.add(arg);
+        }
+        assertThat(router.dispatch("foo", frame)).isEqualTo("al");
+    }
+
+    @Test public void testArgFrame() {
+        MetaFunction<Object> concat = new MetaFunction.Arity2<String, String, Object>((a, b) -> a + b);
+        ArgFrame frame = ArgFrame.current().add("foo").add("bar");
+        assertThat(concat.apply(frame)).isEqualTo("foobar");
+        assertThat(frame.size()).isEqualTo(0);
+        assertThat(frame.slots[0]).isNull();
+
+        //the frame is empty by the time the function runs, so it can fill it again
+        MetaFunction<Object> nested = new MetaFunction.Arity1<String, Object>(
+                a -> concat.apply(ArgFrame.current().add(a).add("!")));
+        assertThat(nested.apply(ArgFrame.current().add("hi"))).isEqualTo("hi!");
+
+        ArgFrame wide = new ArgFrame(1);
+        for (int i = 0; i < 12; i++) {
+            wide.add(i);
+        }
+        assertThat(MetaFunction.of(args -> args.length).apply(wide)).isEqualTo(12);
+        assertThat(wide.size()).isEqualTo(0);
+
+        RoutedExample router = new RoutedExample();
+        router.route("name", (String name) -> "Hello, " + name);
+        assertThat(router.dispatch("name", ArgFrame.current().add("Sam"))).isEqualTo("Hello, Sam");
+    }
+
+    static class GuardedApplier extends GuardedApplier_MetaFunction<Object> {
+        MetaFunction<Object> function;
+        MetaFunction<Object> onError;
+
+        @MetaMethod(maxArity = 2) void when(MetaFunction<Object> function, MetaFunction<Object> onError) {
+            this.function = function;
+            this.onError = onError;
+        }
+    }
+
+    @Test public void testSeveralMetaFunctionParameters() {
+        GuardedApplier fn = new GuardedApplier();
+        fn.when((String a, String b) -> a + b, MetaAdapters.of1((Exception e) -> e.getMessage()));
+        assertThat(fn.function.apply("a", "b")).isEqualTo("ab");
+        assertThat(fn.onError.apply(new Exception("boom"))).isEqualTo("boom");
+
+        fn.when(MetaAdapters.of0(() -> "x"), (Exception e) -> "failed");
+        assertThat(fn.function.apply()).isEqualTo("x");
+        assertThat(fn.onError.apply(new Exception())).isEqualTo("failed");
+
+        //a set of overloads per MetaFunction parameter, rather than one for every combination of arities
+        assertThat(GuardedApplier_MetaFunction.class.getDeclaredMethods().length).isEqualTo(1 + 3 + 3);
+    }
+
+    static class MemoizingGuardedApplier extends MemoizingGuardedApplier_MetaFunction<Object> {
+        MetaFunction<Object> function;
+        MetaFunction<Object> onError;
+
+        @MetaMethod(maxArity = 1, memoize = 2) void when(MetaFunction<Object> function, MetaFunction<Object> onError) {
+            this.function = function;
+            this.onError = onError;
+        }
+    }
+
+    @Test public void testOptionsApplyToFirstMetaFunctionParameter() {
+        MemoizingGuardedApplier fn = new MemoizingGuardedApplier();
+        fn.when((String a) -> a, MetaAdapters.of1((Exception e) -> "failed"));
+        assertThat(fn.function).isInstanceOf(MemoizedMetaFunction.class);
+        assertThat(fn.onError).isInstanceOf(MetaFunction.Arity1.class);
+
+        fn.when(MetaAdapters.of1((String a) -> a), (Exception e) -> "failed");
+        assertThat(fn.function).isInstanceOf(MemoizedMetaFunction.class);
+        assertThat(fn.onError).isInstanceOf(MetaFunction.Arity1.class);
+    }
+
     //TODO: multiple @MetaMethods with different types?
-    //TODO: ensure exactly one MetaFunction parameter per method
     //TODO: enable generic metamethod return type
     //TODO: validate clashing meta methods
     //TODO: single Object arg causes error when in same package
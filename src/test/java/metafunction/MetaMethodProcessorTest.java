@@ -0,0 +1,97 @@
+package metafunction;
+
+import com.google.common.collect.Lists;
+import org.junit.Test;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+/**
+ * Compiles small sources through MetaMethodProcessor, for behaviour that only shows up as compile errors.
+ */
+public class MetaMethodProcessorTest {
+
+    static final String NUMBERS = "package numbers;\n"
+            + "import metafunction.*;\n"
+            + "class Numbers extends Numbers_MetaFunction<Object> {\n"
+            + "    @MetaMethod(primitives = true) void when(MetaFunction<Object> function) { }\n"
+            + "    void register() { %s; }\n"
+            + "}\n";
+
+    @Test public void testImplicitlyTypedLambdasAreAmbiguousWithPrimitives() throws IOException {
+        List<Diagnostic<? extends JavaFileObject>> errors = compile(String.format(NUMBERS, "when((a, b) -> a)"));
+        assertThat(errors).hasSize(1);
+        assertThat(errors.get(0).getMessage(null).contains("ambiguous")).isTrue();
+
+        assertThat(compile(String.format(NUMBERS, "when((String a, String b) -> a)"))).hasSize(0);
+        assertThat(compile(String.format(NUMBERS, "when((int a, int b) -> a + b)"))).hasSize(0);
+    }
+
+    @Test public void testReportsBadEngineOption() throws IOException {
+        List<Diagnostic<? extends JavaFileObject>> errors = compile(String.format(NUMBERS, "when((int a) -> a)"),
+                "metafunction.engine=method_handel");
+        //nothing is generated, so the missing superclass is reported too
+        assertThat(errors.get(0).getMessage(null).contains("-Ametafunction.engine=method_handel")).isTrue();
+    }
+
+    @Test public void testReportsBadMaxArityOption() throws IOException {
+        for (String maxArity : new String[]{"ten", "-2"}) {
+            List<Diagnostic<? extends JavaFileObject>> errors = compile(String.format(NUMBERS, "when((int a) -> a)"),
+                    "metafunction.maxArity=" + maxArity);
+            assertThat(errors.get(0).getMessage(null).contains("-Ametafunction.maxArity=" + maxArity)).isTrue();
+        }
+    }
+
+    static List<Diagnostic<? extends JavaFileObject>> compile(String source, String... processorOptions) throws IOException {
+        Path classes = Files.createTempDirectory("metafunction");
+        try {
+            JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+            DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+            List<String> options = Lists.newArrayList(
+                    "-classpath", System.getProperty("java.class.path"),
+                    "-d", classes.toString(),
+                    "-s", classes.toString());
+            for (String option : processorOptions) {
+                options.add("-A" + option);
+            }
+            JavaFileObject file = new SimpleJavaFileObject(URI.create("string:///numbers/Numbers.java"), JavaFileObject.Kind.SOURCE) {
+                @Override public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                    return source;
+                }
+            };
+            compiler.getTask(null, null, diagnostics, options, null, Collections.singletonList(file)).call();
+            List<Diagnostic<? extends JavaFileObject>> errors = Lists.newArrayList();
+            for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+                if (diagnostic.getKind() == Diagnostic.Kind.ERROR) {
+                    errors.add(diagnostic);
+                }
+            }
+            return errors;
+        } finally {
+            delete(classes.toFile());
+        }
+    }
+
+    static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}